@@ -0,0 +1,126 @@
+package course.concurrency.exams;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Log-bucketed histogram of non-negative longs in the spirit of HdrHistogram.
+ * Every power of two is split into 32 sub-buckets, so a reported value is
+ * within ~3% of the recorded one and memory is constant whatever the count.
+ *
+ * Recording is single-writer: give every writing thread its own histogram
+ * and {@link #add} them on read. Counts are written with opaque stores, so
+ * readers see progress without the writer paying for a fence or a CAS.
+ */
+public class LogHistogram {
+
+    private static final VarHandle COUNTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final long[] counts = new long[BUCKETS];
+    private volatile long max;
+
+    public void record(long value) {
+        int index = indexOf(Math.max(0, value));
+        COUNTS.setOpaque(counts, index, (long) COUNTS.getOpaque(counts, index) + 1);
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Adds the counts of another histogram to this one. The other histogram
+     * may still be recording; its in-flight values are picked up or not.
+     */
+    public LogHistogram add(LogHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = (long) COUNTS.getOpaque(other.counts, i);
+            if (count != 0) {
+                counts[i] += count;
+            }
+        }
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += (long) COUNTS.getOpaque(counts, i);
+        }
+        return total;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @param percentile from 0 to 100
+     * @return upper bound of the bucket that holds the percentile, 0 if empty
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += (long) COUNTS.getOpaque(counts, i);
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    public double getMean() {
+        long total = 0;
+        double sum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = (long) COUNTS.getOpaque(counts, i);
+            if (count != 0) {
+                total += count;
+                sum += count * (double) (lowestValueOf(i) + highestValueOf(i)) / 2;
+            }
+        }
+        return total == 0 ? 0 : sum / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d p50=%d p99=%d p99.9=%d max=%d",
+                getCount(), getValueAtPercentile(50), getValueAtPercentile(99),
+                getValueAtPercentile(99.9), getMax());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    static long lowestValueOf(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int exponent = index / SUB_COUNT + SUB_BITS - 1;
+        long sub = index % SUB_COUNT;
+        return (SUB_COUNT + sub) << (exponent - SUB_BITS);
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int exponent = index / SUB_COUNT + SUB_BITS - 1;
+        return lowestValueOf(index) + (1L << (exponent - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,34 @@
+package course.concurrency.exams;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual-thread executors for code compiled for Java 11. The factory is
+ * looked up reflectively, so it works on JDK 21+ and fails cleanly before.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        try {
+            newPerTaskExecutor().shutdown();
+            return true;
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the JDK has no virtual threads
+     */
+    public static ExecutorService newPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this JDK", e);
+        }
+    }
+}
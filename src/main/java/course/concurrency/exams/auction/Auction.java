@@ -4,5 +4,10 @@ public interface Auction {
 
     boolean propose(Bid bid);
 
+    // primitive variant, implementations may avoid allocating for losing bids
+    default boolean propose(long id, long participantId, long price) {
+        return propose(new Bid(id, participantId, price));
+    }
+
     Bid getLatestBid();
 }
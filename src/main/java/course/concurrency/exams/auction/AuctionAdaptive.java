@@ -0,0 +1,159 @@
+package course.concurrency.exams.auction;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Switches between plain CAS, CAS with backoff and a lock depending on how
+ * often CAS fails (or, in lock mode, how often the lock is contended). Every
+ * proposal is counted in LongAdders, which spread contended increments over
+ * cells instead of retrying one CAS; only a randomly sampled proposal,
+ * roughly once per window, sums them and decides on the mode.
+ *
+ * Every mode updates the winner with CAS on the same reference, the lock only
+ * decides how many threads compete for it. So threads that still run in the
+ * old mode during a switch stay correct.
+ */
+public class AuctionAdaptive implements Auction {
+
+    public enum Mode { CAS, BACKOFF, LOCK }
+
+    private static final int WINDOW = 1 << 12;
+    // failures per proposal to go one mode up or down
+    private static final double ESCALATE_RATE = 0.5;
+    private static final double RELAX_RATE = 0.05;
+    private static final int MAX_BACKOFF_SPINS = 1 << 10;
+
+    private Notifier notifier;
+    // one proposal in window decides on the mode, 0 for never
+    private final int window;
+
+    public AuctionAdaptive(Notifier notifier) {
+        this(notifier, WINDOW);
+    }
+
+    AuctionAdaptive(Notifier notifier, int window) {
+        this.notifier = notifier;
+        this.window = window;
+    }
+
+    private final AtomicReference<Bid> latestBid = new AtomicReference<>(new Bid(Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE));
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Mode mode = Mode.CAS;
+
+    private final AtomicBoolean adapting = new AtomicBoolean();
+    private final LongAdder windowProposals = new LongAdder();
+    private final LongAdder windowFailures = new LongAdder();
+    private final LongAdder casFailures = new LongAdder();
+    private final LongAdder modeSwitches = new LongAdder();
+    private final LongAdder[] proposalsByMode = {new LongAdder(), new LongAdder(), new LongAdder()};
+
+    public boolean propose(Bid bid) {
+        return propose(bid.id(), bid.participantId(), bid.price());
+    }
+
+    public boolean propose(long id, long participantId, long price) {
+        Mode current = mode;
+        proposalsByMode[current.ordinal()].increment();
+        windowProposals.increment();
+        if (window > 0 && ThreadLocalRandom.current().nextInt(window) == 0) {
+            adapt();
+        }
+
+        if (price <= latestBid.get().price()) {
+            return false;
+        }
+        Bid bid = new Bid(id, participantId, price);
+        Bid outdated;
+        if (current == Mode.LOCK) {
+            if (!lock.tryLock()) {
+                windowFailures.increment();
+                lock.lock();
+            }
+            try {
+                outdated = update(bid, Mode.LOCK);
+            } finally {
+                lock.unlock();
+            }
+        } else {
+            outdated = update(bid, current);
+        }
+        if (outdated == null) {
+            return false;
+        }
+        notifier.sendOutdatedMessage(outdated);
+        return true;
+    }
+
+    // returns the outdated bid or null if the bid lost
+    private Bid update(Bid bid, Mode mode) {
+        int spins = 1;
+        for (;;) {
+            Bid current = latestBid.get();
+            if (bid.price() <= current.price()) {
+                return null;
+            }
+            if (latestBid.compareAndSet(current, bid)) {
+                return current;
+            }
+            casFailures.increment();
+            windowFailures.increment();
+            if (mode == Mode.BACKOFF) {
+                for (int i = ThreadLocalRandom.current().nextInt(spins); i >= 0; i--) {
+                    Thread.onSpinWait();
+                }
+                spins = Math.min(spins << 1, MAX_BACKOFF_SPINS);
+            }
+        }
+    }
+
+    private void adapt() {
+        if (!adapting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            adapt(windowProposals.sumThenReset(), windowFailures.sumThenReset());
+        } finally {
+            adapting.set(false);
+        }
+    }
+
+    // moves at most one mode up or down for the failures of one window
+    void adapt(long proposals, long failures) {
+        Mode current = mode;
+        double rate = (double) failures / Math.max(1, proposals);
+        Mode next = current;
+        if (rate > ESCALATE_RATE && current != Mode.LOCK) {
+            next = Mode.values()[current.ordinal() + 1];
+        } else if (rate < RELAX_RATE && current != Mode.CAS) {
+            next = Mode.values()[current.ordinal() - 1];
+        }
+        if (next != current) {
+            mode = next;
+            modeSwitches.increment();
+        }
+    }
+
+    public Bid getLatestBid() {
+        return latestBid.get();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getModeSwitches() {
+        return modeSwitches.sum();
+    }
+
+    public long getCasFailures() {
+        return casFailures.sum();
+    }
+
+    public long getProposals(Mode mode) {
+        return proposalsByMode[mode.ordinal()].sum();
+    }
+}
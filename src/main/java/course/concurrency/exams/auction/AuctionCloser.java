@@ -0,0 +1,374 @@
+package course.concurrency.exams.auction;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Closes lots of an {@link AuctionEngine} at their deadlines with a
+ * hierarchical timing wheel: four levels of 256 buckets, each level's bucket
+ * spanning a full turn of the level below. Timers are entries of primitive
+ * arrays linked into their bucket, so schedule and cancel are O(1) and
+ * millions of deadlines cost a few dozen bytes each, with one ticking thread
+ * instead of a scheduled task per lot.
+ *
+ * The engine owns the real deadline of every lot. Anti-sniping extensions
+ * only move that deadline; when the wheel fires for an extended lot it finds
+ * the deadline in the future and files the lot again. So bids never touch the
+ * wheel. Scheduling, cancelling and the close check of a fired lot all hold
+ * the wheel lock, so the deadline in the engine and the lot's timer always
+ * change together.
+ *
+ * A listener that throws is logged and does not stop the other lots of the
+ * tick, nor the ticker.
+ */
+public class AuctionCloser implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface CloseListener {
+        // winner is null if the lot closed without bids
+        void closed(long lotId, Bid winner);
+    }
+
+    private static final Logger LOG = Logger.getLogger(AuctionCloser.class.getName());
+
+    private static final int LEVEL_BITS = 8;
+    private static final int BUCKETS = 1 << LEVEL_BITS;
+    private static final int LEVELS = 4;
+    private static final int NONE = -1;
+    private static final long[] NOTHING_DUE = new long[0];
+
+    private final AuctionEngine engine;
+    private final long tickMillis;
+    private final CloseListener listener;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService ticker;
+
+    // all wheel state below is guarded by this
+    private final int[] heads = new int[LEVELS * BUCKETS];
+    private long currentTick;
+
+    private long[] lotIds = new long[1024];
+    private long[] deadlineTicks = new long[1024];
+    private int[] next = new int[1024];
+    private int[] prev = new int[1024];
+    private int[] bucketOf = new int[1024];
+    private int freeHead = NONE;
+    private int used;
+    private int pending;
+
+    private final LongIntMap timersByLot = new LongIntMap();
+
+    public AuctionCloser(AuctionEngine engine, long tickMillis, CloseListener listener) {
+        this(engine, tickMillis, listener, System::currentTimeMillis, true);
+    }
+
+    AuctionCloser(AuctionEngine engine, long tickMillis, CloseListener listener, LongSupplier clock, boolean startTicker) {
+        this.engine = engine;
+        this.tickMillis = tickMillis;
+        this.listener = listener;
+        this.clock = clock;
+        Arrays.fill(heads, NONE);
+        this.currentTick = clock.getAsLong() / tickMillis;
+        if (startTicker) {
+            ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "AuctionCloser_ticker");
+                t.setDaemon(true);
+                return t;
+            });
+            ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        } else {
+            ticker = null;
+        }
+    }
+
+    /**
+     * Closes the lot at the deadline, replacing the lot's previous deadline.
+     *
+     * @return false if the lot is already closed
+     */
+    public boolean schedule(long lotId, long deadlineMillis) {
+        synchronized (this) {
+            if (!engine.setDeadline(lotId, deadlineMillis)) {
+                return false;
+            }
+            int timer = timersByLot.get(lotId);
+            if (timer == NONE) {
+                timer = allocate(lotId);
+                timersByLot.put(lotId, timer);
+                pending++;
+            } else {
+                unlink(timer);
+            }
+            deadlineTicks[timer] = Math.max(deadlineMillis / tickMillis, currentTick + 1);
+            insert(timer);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the lot's deadline, the lot stays open.
+     */
+    public void cancel(long lotId) {
+        synchronized (this) {
+            // a timer already taken by a tick finds no deadline when it fires;
+            // an unknown lot is not created
+            engine.clearDeadline(lotId);
+            int timer = timersByLot.remove(lotId);
+            if (timer == NONE) {
+                return;
+            }
+            unlink(timer);
+            release(timer);
+            pending--;
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return pending;
+    }
+
+    /**
+     * Fires every timer due up to the given time. Called by the ticker, and by
+     * tests driving a manual clock.
+     */
+    void advanceTo(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        for (;;) {
+            long[] due = NOTHING_DUE;
+            int count = 0;
+            synchronized (this) {
+                if (currentTick >= targetTick) {
+                    return;
+                }
+                currentTick++;
+                cascade();
+                int bucket = (int) (currentTick & (BUCKETS - 1));
+                if (heads[bucket] != NONE) {
+                    due = new long[countBucket(bucket)];
+                }
+                for (int timer = heads[bucket]; timer != NONE; ) {
+                    int following = next[timer];
+                    due[count++] = lotIds[timer];
+                    timersByLot.remove(lotIds[timer]);
+                    release(timer);
+                    pending--;
+                    timer = following;
+                }
+                heads[bucket] = NONE;
+            }
+            for (long lotId : due) {
+                try {
+                    fire(lotId, nowMillis);
+                } catch (RuntimeException e) {
+                    LOG.log(Level.WARNING, "Closing lot " + lotId + " failed", e);
+                }
+            }
+        }
+    }
+
+    private void tick() {
+        try {
+            advanceTo(clock.getAsLong());
+        } catch (RuntimeException e) {
+            // an exception escaping would cancel the ticker for good
+            LOG.log(Level.WARNING, "Tick failed", e);
+        }
+    }
+
+    private void fire(long lotId, long nowMillis) {
+        synchronized (this) {
+            long result = engine.closeIfDue(lotId, nowMillis);
+            if (result == LotTable.NO_DEADLINE) {
+                return;
+            }
+            if (result != LotTable.CLOSED) {
+                // extended by a late bid, unless the lot was rescheduled meanwhile
+                if (timersByLot.get(lotId) == NONE) {
+                    int timer = allocate(lotId);
+                    timersByLot.put(lotId, timer);
+                    pending++;
+                    deadlineTicks[timer] = Math.max(result / tickMillis, currentTick + 1);
+                    insert(timer);
+                }
+                return;
+            }
+        }
+        listener.closed(lotId, engine.getLatestBid(lotId));
+    }
+
+    @Override
+    public void close() {
+        if (ticker != null) {
+            ticker.shutdown();
+        }
+    }
+
+    // moves the timers of higher levels down when a lower level completes a turn
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if (((currentTick >>> (LEVEL_BITS * (level - 1))) & (BUCKETS - 1)) != 0) {
+                return;
+            }
+            int bucket = level * BUCKETS + (int) ((currentTick >>> (LEVEL_BITS * level)) & (BUCKETS - 1));
+            int timer = heads[bucket];
+            heads[bucket] = NONE;
+            while (timer != NONE) {
+                int following = next[timer];
+                insert(timer);
+                timer = following;
+            }
+        }
+    }
+
+    // the deadline is never before the current tick, whose bucket is drained right after a cascade
+    private void insert(int timer) {
+        long deadline = Math.max(deadlineTicks[timer], currentTick);
+        long delta = deadline - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (LEVEL_BITS * (level + 1))) {
+            level++;
+        }
+        if (level == LEVELS - 1 && delta >= 1L << (LEVEL_BITS * LEVELS)) {
+            // beyond the wheel, park in the furthest bucket and cascade again from there
+            deadline = currentTick + (1L << (LEVEL_BITS * LEVELS)) - 1;
+        }
+        int bucket = level * BUCKETS + (int) ((deadline >>> (LEVEL_BITS * level)) & (BUCKETS - 1));
+        bucketOf[timer] = bucket;
+        prev[timer] = NONE;
+        next[timer] = heads[bucket];
+        if (heads[bucket] != NONE) {
+            prev[heads[bucket]] = timer;
+        }
+        heads[bucket] = timer;
+    }
+
+    private void unlink(int timer) {
+        int bucket = bucketOf[timer];
+        if (prev[timer] != NONE) {
+            next[prev[timer]] = next[timer];
+        } else {
+            heads[bucket] = next[timer];
+        }
+        if (next[timer] != NONE) {
+            prev[next[timer]] = prev[timer];
+        }
+    }
+
+    private int countBucket(int bucket) {
+        int count = 0;
+        for (int timer = heads[bucket]; timer != NONE; timer = next[timer]) {
+            count++;
+        }
+        return count;
+    }
+
+    private int allocate(long lotId) {
+        int timer;
+        if (freeHead != NONE) {
+            timer = freeHead;
+            freeHead = next[timer];
+        } else {
+            if (used == lotIds.length) {
+                int capacity = lotIds.length << 1;
+                lotIds = Arrays.copyOf(lotIds, capacity);
+                deadlineTicks = Arrays.copyOf(deadlineTicks, capacity);
+                next = Arrays.copyOf(next, capacity);
+                prev = Arrays.copyOf(prev, capacity);
+                bucketOf = Arrays.copyOf(bucketOf, capacity);
+            }
+            timer = used++;
+        }
+        lotIds[timer] = lotId;
+        return timer;
+    }
+
+    private void release(int timer) {
+        next[timer] = freeHead;
+        freeHead = timer;
+    }
+
+    /**
+     * Open-addressed long to int map with backward-shift deletion, so lots
+     * can find their timer without boxing.
+     */
+    private static final class LongIntMap {
+        private long[] keys = newKeys(1024);
+        private int[] values = new int[1024];
+        private int size;
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = (int) LotTable.mix(key) & mask; keys[i] != LotTable.EMPTY; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return NONE;
+        }
+
+        void put(long key, int value) {
+            if (size + 1 > keys.length / 2) {
+                rehash(keys.length << 1);
+            }
+            int mask = keys.length - 1;
+            int i = (int) LotTable.mix(key) & mask;
+            while (keys[i] != LotTable.EMPTY && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == LotTable.EMPTY) {
+                size++;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        int remove(long key) {
+            int mask = keys.length - 1;
+            int i = (int) LotTable.mix(key) & mask;
+            while (keys[i] != key) {
+                if (keys[i] == LotTable.EMPTY) {
+                    return NONE;
+                }
+                i = (i + 1) & mask;
+            }
+            int value = values[i];
+            // shift following entries back so no probe chain is broken
+            int gap = i;
+            for (int j = (gap + 1) & mask; keys[j] != LotTable.EMPTY; j = (j + 1) & mask) {
+                int home = (int) LotTable.mix(keys[j]) & mask;
+                if (((j - home) & mask) >= ((j - gap) & mask)) {
+                    keys[gap] = keys[j];
+                    values[gap] = values[j];
+                    gap = j;
+                }
+            }
+            keys[gap] = LotTable.EMPTY;
+            size--;
+            return value;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = newKeys(capacity);
+            values = new int[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != LotTable.EMPTY) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, LotTable.EMPTY);
+            return keys;
+        }
+    }
+}
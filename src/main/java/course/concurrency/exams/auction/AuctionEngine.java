@@ -0,0 +1,330 @@
+package course.concurrency.exams.auction;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.LongSupplier;
+
+/**
+ * Hosts many lots in one object. Lots are spread over independent stripes,
+ * each stripe keeps its lots in open-addressed primitive arrays, so there is
+ * no heap object per lot.
+ *
+ * Losing bids are rejected without locking: the current price is read with
+ * acquire semantics and compared first. Only a bid that may win takes the
+ * stripe lock.
+ *
+ * Lots may have a deadline (see {@link AuctionCloser}). It is checked under
+ * the stripe lock, so a bid is never accepted after the deadline even if the
+ * lot has not been closed yet, and a late bid inside the anti-sniping window
+ * pushes the deadline out.
+ */
+public class AuctionEngine {
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final long EMPTY = LotTable.EMPTY;
+    private static final long NO_DEADLINE = LotTable.NO_DEADLINE;
+    private static final long CLOSED = LotTable.CLOSED;
+    private static final Bid NO_BID = new Bid(EMPTY, EMPTY, EMPTY);
+    private static final int DEFAULT_STRIPE_CAPACITY = 1 << 10;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final Notifier notifier;
+    private final BidJournal journal;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    private volatile long snipeWindowMillis;
+    private volatile long snipeExtensionMillis;
+    private LongSupplier clock = System::currentTimeMillis;
+
+    public AuctionEngine(Notifier notifier) {
+        this(notifier, Runtime.getRuntime().availableProcessors() * 16, 0);
+    }
+
+    public AuctionEngine(Notifier notifier, int stripeCount, int expectedLots) {
+        this(notifier, stripeCount, expectedLots, null);
+    }
+
+    // every accepted bid is appended to the journal when one is given
+    public AuctionEngine(Notifier notifier, int stripeCount, int expectedLots, BidJournal journal) {
+        this.notifier = notifier;
+        this.journal = journal;
+        int count = tableSizeFor(Math.max(1, stripeCount));
+        int perStripe = Math.max(DEFAULT_STRIPE_CAPACITY, tableSizeFor((int) (expectedLots / count / LOAD_FACTOR) + 1));
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+        this.stripeMask = count - 1;
+    }
+
+    public boolean propose(long lotId, Bid bid) {
+        return propose(lotId, bid.id(), bid.participantId(), bid.price());
+    }
+
+    public boolean propose(long lotId, long id, long participantId, long price) {
+        if (lotId == EMPTY) {
+            throw new IllegalArgumentException("Lot id " + EMPTY + " is reserved");
+        }
+        long hash = LotTable.mix(lotId);
+        Stripe stripe = stripes[(int) (hash >>> 32) & stripeMask];
+        if (price <= stripe.peekPrice(lotId, (int) hash)) {
+            return false;
+        }
+
+        Bid outdated;
+        synchronized (stripe) {
+            outdated = stripe.update(lotId, (int) hash, id, participantId, price, true);
+        }
+        if (outdated == null) {
+            return false;
+        }
+        if (journal != null) {
+            journal.append(lotId, id, participantId, price);
+        }
+        if (outdated != NO_BID) {
+            notifier.sendOutdatedMessage(lotId, outdated);
+        }
+        return true;
+    }
+
+    /**
+     * Applies a bid recovered from a journal: keeps it if it is higher, never
+     * notifies and never journals it again.
+     */
+    public void restore(long lotId, long id, long participantId, long price) {
+        long hash = LotTable.mix(lotId);
+        Stripe stripe = stripes[(int) (hash >>> 32) & stripeMask];
+        synchronized (stripe) {
+            stripe.update(lotId, (int) hash, id, participantId, price, false);
+        }
+    }
+
+    /**
+     * A bid accepted less than {@code windowMillis} before the deadline moves
+     * the deadline to {@code extensionMillis} after the bid.
+     */
+    public void setAntiSniping(long windowMillis, long extensionMillis) {
+        this.snipeExtensionMillis = extensionMillis;
+        this.snipeWindowMillis = windowMillis;
+    }
+
+    // for tests only
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Sets the time after which the lot takes no bids, creating the lot if
+     * needed. {@link LotTable#NO_DEADLINE} removes the deadline.
+     *
+     * @return false if the lot is already closed
+     */
+    public boolean setDeadline(long lotId, long deadlineMillis) {
+        if (lotId == EMPTY) {
+            throw new IllegalArgumentException("Lot id " + EMPTY + " is reserved");
+        }
+        long hash = LotTable.mix(lotId);
+        Stripe stripe = stripes[(int) (hash >>> 32) & stripeMask];
+        synchronized (stripe) {
+            return stripe.setDeadline(lotId, (int) hash, deadlineMillis);
+        }
+    }
+
+    /**
+     * Removes the deadline of an open lot. Unlike {@link #setDeadline} it
+     * never creates the lot, so clearing an unknown id leaves nothing behind.
+     */
+    void clearDeadline(long lotId) {
+        long hash = LotTable.mix(lotId);
+        Stripe stripe = stripes[(int) (hash >>> 32) & stripeMask];
+        synchronized (stripe) {
+            stripe.clearDeadline(lotId, (int) hash);
+        }
+    }
+
+    /**
+     * Closes the lot if its deadline has passed. The winning bid is frozen
+     * from then on.
+     *
+     * @return {@link LotTable#CLOSED} if the lot was closed by this call, the
+     * current deadline if it is still in the future, or
+     * {@link LotTable#NO_DEADLINE} if there is nothing to close
+     */
+    long closeIfDue(long lotId, long nowMillis) {
+        long hash = LotTable.mix(lotId);
+        Stripe stripe = stripes[(int) (hash >>> 32) & stripeMask];
+        synchronized (stripe) {
+            return stripe.closeIfDue(lotId, (int) hash, nowMillis);
+        }
+    }
+
+    public boolean isClosed(long lotId) {
+        long hash = LotTable.mix(lotId);
+        Stripe stripe = stripes[(int) (hash >>> 32) & stripeMask];
+        synchronized (stripe) {
+            return stripe.deadline(lotId, (int) hash) == CLOSED;
+        }
+    }
+
+    public Bid getLatestBid(long lotId) {
+        long hash = LotTable.mix(lotId);
+        Stripe stripe = stripes[(int) (hash >>> 32) & stripeMask];
+        synchronized (stripe) {
+            return stripe.get(lotId, (int) hash);
+        }
+    }
+
+    public long getLatestPrice(long lotId) {
+        long hash = LotTable.mix(lotId);
+        return stripes[(int) (hash >>> 32) & stripeMask].peekPrice(lotId, (int) hash);
+    }
+
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    private static int tableSizeFor(int n) {
+        int size = Integer.highestOneBit(Math.max(1, n - 1)) << 1;
+        return size <= 0 ? 1 << 30 : size;
+    }
+
+    /**
+     * One open-addressed table. Writers hold the stripe monitor; readers in
+     * {@link #peekPrice} go without it, so every slot publishes its key last
+     * with release semantics and the table itself is swapped through a
+     * volatile field on resize.
+     */
+    private final class Stripe {
+
+        private volatile LotTable table;
+        private int size;
+
+        Stripe(int capacity) {
+            this.table = new LotTable(capacity);
+        }
+
+        long peekPrice(long lotId, int hash) {
+            LotTable t = table;
+            int mask = t.keys.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                long key = (long) LONGS.getAcquire(t.keys, i);
+                if (key == lotId) {
+                    return (long) LONGS.getAcquire(t.prices, i);
+                }
+                if (key == EMPTY) {
+                    return EMPTY;
+                }
+            }
+        }
+
+        Bid get(long lotId, int hash) {
+            LotTable t = table;
+            int slot = t.find(lotId, hash);
+            if (t.keys[slot] == EMPTY || t.prices[slot] == EMPTY) {
+                return null;
+            }
+            return new Bid(t.ids[slot], t.participants[slot], t.prices[slot]);
+        }
+
+        // returns the outdated bid, NO_BID for a lot without bids or null if the bid lost
+        Bid update(long lotId, int hash, long id, long participantId, long price, boolean live) {
+            LotTable t = table;
+            int slot = t.find(lotId, hash);
+            if (t.keys[slot] == EMPTY) {
+                t = insert(lotId, hash);
+                slot = t.find(lotId, hash);
+            }
+            if (price <= t.prices[slot]) {
+                return null;
+            }
+            long deadline = t.deadlines[slot];
+            if (live && deadline != NO_DEADLINE) {
+                if (deadline == CLOSED) {
+                    return null;
+                }
+                long now = clock.getAsLong();
+                if (now >= deadline) {
+                    return null;
+                }
+                if (deadline - now < snipeWindowMillis) {
+                    t.deadlines[slot] = Math.max(deadline, now + snipeExtensionMillis);
+                }
+            }
+            Bid outdated = t.prices[slot] == EMPTY ? NO_BID
+                    : new Bid(t.ids[slot], t.participants[slot], t.prices[slot]);
+            t.ids[slot] = id;
+            t.participants[slot] = participantId;
+            LONGS.setRelease(t.prices, slot, price);
+            return outdated;
+        }
+
+        boolean setDeadline(long lotId, int hash, long deadlineMillis) {
+            LotTable t = table;
+            int slot = t.find(lotId, hash);
+            if (t.keys[slot] == EMPTY) {
+                t = insert(lotId, hash);
+                slot = t.find(lotId, hash);
+            }
+            if (t.deadlines[slot] == CLOSED) {
+                return false;
+            }
+            t.deadlines[slot] = deadlineMillis;
+            return true;
+        }
+
+        void clearDeadline(long lotId, int hash) {
+            LotTable t = table;
+            int slot = t.find(lotId, hash);
+            if (t.keys[slot] != EMPTY && t.deadlines[slot] != CLOSED) {
+                t.deadlines[slot] = NO_DEADLINE;
+            }
+        }
+
+        long closeIfDue(long lotId, int hash, long nowMillis) {
+            LotTable t = table;
+            int slot = t.find(lotId, hash);
+            long deadline = t.deadlines[slot];
+            if (t.keys[slot] == EMPTY || deadline == NO_DEADLINE || deadline == CLOSED) {
+                return NO_DEADLINE;
+            }
+            if (deadline > nowMillis) {
+                return deadline;
+            }
+            t.deadlines[slot] = CLOSED;
+            return CLOSED;
+        }
+
+        long deadline(long lotId, int hash) {
+            LotTable t = table;
+            int slot = t.find(lotId, hash);
+            return t.keys[slot] == EMPTY ? NO_DEADLINE : t.deadlines[slot];
+        }
+
+        // adds a lot without bids, the price stays EMPTY until the first bid
+        private LotTable insert(long lotId, int hash) {
+            LotTable t = table;
+            if (size + 1 > t.keys.length * LOAD_FACTOR) {
+                t = resize(t);
+            }
+            int slot = t.find(lotId, hash);
+            LONGS.setRelease(t.prices, slot, EMPTY);
+            LONGS.setRelease(t.keys, slot, lotId);
+            size++;
+            return t;
+        }
+
+        private LotTable resize(LotTable old) {
+            LotTable resized = old.grow();
+            table = resized;
+            return resized;
+        }
+    }
+}
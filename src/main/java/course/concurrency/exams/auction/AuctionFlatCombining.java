@@ -0,0 +1,179 @@
+package course.concurrency.exams.auction;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Flat combining: a proposer publishes its bid in its own slot and whoever
+ * holds the combiner flag applies all published bids in one pass. The pass
+ * only installs the highest bid, which is the same as applying the pending
+ * bids from highest to lowest, so only the previous winner is outdated.
+ *
+ * Bids that cannot win are rejected against the volatile winner before they
+ * are published. A bid is published as primitives in the slot, so only a
+ * bid that wins is turned into a {@link Bid}.
+ *
+ * Slots form a publication list as in the original algorithm: the combiner
+ * stamps every slot it finds pending with the pass number, and every
+ * {@code CLEANUP_EVERY} passes unlinks slots idle for more than
+ * {@code MAX_IDLE_PASSES}. A thread that finds its slot unlinked links it
+ * again, so threads that stopped proposing, or died, cost the combiner
+ * nothing for long.
+ */
+public class AuctionFlatCombining implements Auction {
+
+    private static final int EMPTY = 0;
+    private static final int PENDING = 1;
+    private static final int WON = 2;
+    private static final int LOST = 3;
+    private static final int SPINS_BEFORE_YIELD = 64;
+    private static final int CLEANUP_EVERY = 64;
+    private static final int MAX_IDLE_PASSES = 256;
+
+    private Notifier notifier;
+
+    public AuctionFlatCombining(Notifier notifier) {
+        this.notifier = notifier;
+    }
+
+    private volatile Bid latestBid = new Bid(Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE);
+
+    private final AtomicBoolean combining = new AtomicBoolean();
+    private final AtomicReference<Slot> head = new AtomicReference<>();
+    private final ThreadLocal<Slot> localSlot = ThreadLocal.withInitial(Slot::new);
+    // guarded by the combiner flag
+    private long passes;
+
+    public boolean propose(Bid bid) {
+        if (bid.price() <= latestBid.price()) {
+            return false;
+        }
+        return publish(bid, bid.id(), bid.participantId(), bid.price());
+    }
+
+    public boolean propose(long id, long participantId, long price) {
+        if (price <= latestBid.price()) {
+            return false;
+        }
+        return publish(null, id, participantId, price);
+    }
+
+    private boolean publish(Bid bid, long id, long participantId, long price) {
+        Slot slot = localSlot.get();
+        slot.bid = bid;
+        slot.id = id;
+        slot.participantId = participantId;
+        slot.price = price;
+        // the volatile write publishes the fields above
+        slot.status = PENDING;
+
+        for (int spins = 0; ; spins++) {
+            if (!slot.linked) {
+                link(slot);
+            }
+            if (!combining.get() && combining.compareAndSet(false, true)) {
+                Bid outdated;
+                try {
+                    outdated = combine();
+                } finally {
+                    combining.set(false);
+                }
+                if (outdated != null) {
+                    notifier.sendOutdatedMessage(outdated);
+                }
+            }
+            int status = slot.status;
+            if (status != PENDING) {
+                slot.bid = null;
+                slot.status = EMPTY;
+                return status == WON;
+            }
+            if (spins < SPINS_BEFORE_YIELD) {
+                Thread.onSpinWait();
+            } else {
+                // the combiner may be descheduled, give it the core
+                Thread.yield();
+            }
+        }
+    }
+
+    // one pass over the list, returns the outdated winner if the winner changed
+    private Bid combine() {
+        Bid current = latestBid;
+        long pass = ++passes;
+        boolean cleanup = pass % CLEANUP_EVERY == 0;
+        Slot best = null;
+        long bestPrice = current.price();
+        Slot previous = null;
+        for (Slot slot = head.get(); slot != null; ) {
+            Slot following = slot.next;
+            if (slot.status == PENDING) {
+                slot.age = pass;
+                if (slot.price > bestPrice) {
+                    if (best != null) {
+                        best.status = LOST;
+                    }
+                    best = slot;
+                    bestPrice = slot.price;
+                } else {
+                    slot.status = LOST;
+                }
+                previous = slot;
+            } else if (cleanup && previous != null && pass - slot.age > MAX_IDLE_PASSES) {
+                // the head is never unlinked, it may be racing with a push;
+                // an owner publishing right now sees linked cleared and links again
+                previous.next = following;
+                slot.linked = false;
+            } else {
+                previous = slot;
+            }
+            slot = following;
+        }
+        if (best == null) {
+            return null;
+        }
+        // read before WON hands the slot back to its owner
+        Bid winner = best.bid != null ? best.bid : new Bid(best.id, best.participantId, best.price);
+        latestBid = winner;
+        best.status = WON;
+        return current;
+    }
+
+    public Bid getLatestBid() {
+        return latestBid;
+    }
+
+    // slots in the publication list, for tests
+    int getSlotCount() {
+        int count = 0;
+        for (Slot slot = head.get(); slot != null; slot = slot.next) {
+            count++;
+        }
+        return count;
+    }
+
+    // only the owner links its slot, and only while it is not in the list
+    private void link(Slot slot) {
+        slot.linked = true;
+        Slot first;
+        do {
+            first = head.get();
+            slot.next = first;
+        } while (!head.compareAndSet(first, slot));
+    }
+
+    private static final class Slot {
+        // keep neighbouring slots off the same cache line
+        long p1, p2, p3, p4, p5, p6, p7;
+        Bid bid;
+        long id;
+        long participantId;
+        long price;
+        volatile int status;
+        volatile boolean linked;
+        volatile Slot next;
+        // pass that last found the slot pending, combiner only
+        long age;
+        long q1, q2, q3, q4, q5, q6, q7;
+    }
+}
@@ -16,7 +16,7 @@ public class AuctionOptimistic implements Auction {
         Bid current;
         do {
             current = latestBid.get();
-            if (bid.getPrice() <= current.getPrice()) {
+            if (bid.price() <= current.price()) {
                 return false;
             }
         } while (!latestBid.compareAndSet(current, bid));
@@ -24,6 +24,23 @@ public class AuctionOptimistic implements Auction {
         return true;
     }
 
+    public boolean propose(long id, long participantId, long price) {
+        Bid current = latestBid.get();
+        if (price <= current.price()) {
+            return false;
+        }
+        // allocate only once the bid is a candidate winner, retries reuse it
+        Bid bid = new Bid(id, participantId, price);
+        while (!latestBid.compareAndSet(current, bid)) {
+            current = latestBid.get();
+            if (price <= current.price()) {
+                return false;
+            }
+        }
+        notifier.sendOutdatedMessage(current);
+        return true;
+    }
+
     public Bid getLatestBid() {
         return latestBid.get();
     }
@@ -7,22 +7,38 @@ public class AuctionPessimistic implements Auction {
         this.notifier = notifier;
     }
 
-    private volatile Bid latestBid = new Bid(Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE);
+    private final Object lock = new Object();
+
+    // the winning bid is kept unpacked, price is read without the lock
+    private volatile long latestPrice = Long.MIN_VALUE;
+    private long latestId = Long.MIN_VALUE;
+    private long latestParticipantId = Long.MIN_VALUE;
 
     public boolean propose(Bid bid) {
-        if (bid.getPrice() > latestBid.getPrice()) {
-            synchronized (latestBid) {
-                if (bid.getPrice() > latestBid.getPrice()) {
-                    notifier.sendOutdatedMessage(latestBid);
-                    latestBid = bid;
-                    return true;
+        return propose(bid.id(), bid.participantId(), bid.price());
+    }
+
+    public boolean propose(long id, long participantId, long price) {
+        if (price > latestPrice) {
+            Bid outdated;
+            synchronized (lock) {
+                if (price <= latestPrice) {
+                    return false;
                 }
+                outdated = new Bid(latestId, latestParticipantId, latestPrice);
+                latestId = id;
+                latestParticipantId = participantId;
+                latestPrice = price;
             }
+            notifier.sendOutdatedMessage(outdated);
+            return true;
         }
         return false;
     }
 
     public Bid getLatestBid() {
-        return latestBid;
+        synchronized (lock) {
+            return new Bid(latestId, latestParticipantId, latestPrice);
+        }
     }
 }
@@ -0,0 +1,170 @@
+package course.concurrency.exams.auction;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Stoppable auction where the whole state is one long:
+ *
+ *   [version: 42 bits][slot: 20 bits][buffer: 1 bit][stopped: 1 bit]
+ *
+ * The winning bid itself lives in a per-thread slot with two buffers. A
+ * proposer writes its bid into the buffer the state does not point to and
+ * publishes it with one CAS on the state, so propose and stop are ordered by
+ * that single word and a losing bid allocates nothing.
+ *
+ * Slot contents are read seqlock-style: read the state, read the slot,
+ * re-read the state. The version grows with every win, so an unchanged state
+ * means the slot was not rewritten in between.
+ */
+public class AuctionStoppableLockFree implements AuctionStoppable {
+
+    private static final VarHandle STATE;
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(AuctionStoppableLockFree.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final int SLOT_BITS = 20;
+    private static final long STOPPED = 1L;
+    private static final int BUFFER_SHIFT = 1;
+    private static final int SLOT_SHIFT = 2;
+    private static final int VERSION_SHIFT = SLOT_SHIFT + SLOT_BITS;
+    private static final long SLOT_MASK = (1L << SLOT_BITS) - 1;
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    // slot layout: id, participantId, price for buffer 0, the same for buffer 1, slot index
+    private static final int FIELDS = 3;
+    private static final int INDEX = FIELDS * 2;
+
+    private Notifier notifier;
+
+    private volatile long state;
+
+    private final AtomicReferenceArray<long[][]> chunks = new AtomicReferenceArray<>(1 << (SLOT_BITS - CHUNK_BITS));
+    private final AtomicInteger slotCounter = new AtomicInteger();
+    // threads keep their slot for the lifetime of the auction
+    private final ThreadLocal<long[]> localSlot = ThreadLocal.withInitial(this::registerSlot);
+
+    public AuctionStoppableLockFree(Notifier notifier) {
+        this.notifier = notifier;
+        // slot 0 holds the initial bid, state 0 points to it
+        long[] initial = registerSlot();
+        initial[0] = Long.MIN_VALUE;
+        initial[1] = Long.MIN_VALUE;
+        initial[2] = Long.MIN_VALUE;
+        STATE.setRelease(this, 0L);
+    }
+
+    public boolean propose(Bid bid) {
+        return propose(bid.id(), bid.participantId(), bid.price());
+    }
+
+    public boolean propose(long id, long participantId, long price) {
+        long[] mine = null;
+        for (;;) {
+            long current = (long) STATE.getAcquire(this);
+            if ((current & STOPPED) != 0) {
+                return false;
+            }
+            long[] winner = slot(current);
+            int offset = offset(current);
+            long winnerId = (long) LONGS.getAcquire(winner, offset);
+            long winnerParticipantId = (long) LONGS.getAcquire(winner, offset + 1);
+            long winnerPrice = (long) LONGS.getAcquire(winner, offset + 2);
+            if ((long) STATE.getAcquire(this) != current) {
+                continue;
+            }
+            if (price <= winnerPrice) {
+                return false;
+            }
+
+            if (mine == null) {
+                mine = localSlot.get();
+            }
+            long index = mine[INDEX];
+            long buffer = winner == mine ? 1 - ((current >>> BUFFER_SHIFT) & 1) : 0;
+            int target = (int) buffer * FIELDS;
+            LONGS.setRelease(mine, target, id);
+            LONGS.setRelease(mine, target + 1, participantId);
+            LONGS.setRelease(mine, target + 2, price);
+
+            long version = (current >>> VERSION_SHIFT) + 1;
+            long next = (version << VERSION_SHIFT) | (index << SLOT_SHIFT) | (buffer << BUFFER_SHIFT);
+            if (STATE.compareAndSet(this, current, next)) {
+                if (current != 0) {
+                    notifier.sendOutdatedMessage(new Bid(winnerId, winnerParticipantId, winnerPrice));
+                }
+                return true;
+            }
+        }
+    }
+
+    public Bid getLatestBid() {
+        for (;;) {
+            long current = (long) STATE.getAcquire(this);
+            Bid bid = read(current);
+            if ((long) STATE.getAcquire(this) == current) {
+                return bid;
+            }
+        }
+    }
+
+    public Bid stopAuction() {
+        for (;;) {
+            long current = (long) STATE.getAcquire(this);
+            if ((current & STOPPED) != 0 || STATE.compareAndSet(this, current, current | STOPPED)) {
+                // the state never changes once stopped, so the slot is stable
+                return read(current);
+            }
+        }
+    }
+
+    public boolean isStopped() {
+        return (state & STOPPED) != 0;
+    }
+
+    private Bid read(long state) {
+        long[] slot = slot(state);
+        int offset = offset(state);
+        return new Bid((long) LONGS.getAcquire(slot, offset),
+                (long) LONGS.getAcquire(slot, offset + 1),
+                (long) LONGS.getAcquire(slot, offset + 2));
+    }
+
+    private long[] slot(long state) {
+        int index = (int) ((state >>> SLOT_SHIFT) & SLOT_MASK);
+        return chunks.get(index >>> CHUNK_BITS)[index & (CHUNK_SIZE - 1)];
+    }
+
+    private static int offset(long state) {
+        return (int) ((state >>> BUFFER_SHIFT) & 1) * FIELDS;
+    }
+
+    private long[] registerSlot() {
+        int index = slotCounter.getAndIncrement();
+        if (index > SLOT_MASK) {
+            throw new IllegalStateException("Too many bidding threads: " + index);
+        }
+        int chunk = index >>> CHUNK_BITS;
+        long[][] slots = chunks.get(chunk);
+        if (slots == null) {
+            chunks.compareAndSet(chunk, null, new long[CHUNK_SIZE][]);
+            slots = chunks.get(chunk);
+        }
+        long[] slot = new long[INDEX + 1];
+        slot[INDEX] = index;
+        // published to readers by the release writes in propose and the state CAS
+        slots[index & (CHUNK_SIZE - 1)] = slot;
+        return slot;
+    }
+}
@@ -14,9 +14,10 @@ public class AuctionStoppableOptimistic implements AuctionStoppable {
 
     public boolean propose(Bid bid) {
         Bid currentBid;
+        boolean[] stopped = new boolean[1];
         do {
-            currentBid = latestBid.getReference();
-            if (bid.getPrice() <= currentBid.getPrice()) {
+            currentBid = latestBid.get(stopped);
+            if (stopped[0] || bid.getPrice() <= currentBid.getPrice()) {
                 return false;
             }
         } while (!latestBid.compareAndSet(currentBid, bid, false,false));
@@ -29,11 +30,10 @@ public class AuctionStoppableOptimistic implements AuctionStoppable {
     }
 
     public Bid stopAuction() {
-        if (latestBid.isMarked()) {
-            return latestBid.getReference();
-        }
-        Bid latest = latestBid.getReference();
-        latestBid.set(latest, true);
-        return latest;
+        Bid latest;
+        do {
+            latest = latestBid.getReference();
+        } while (!latestBid.attemptMark(latest, true));
+        return latestBid.getReference();
     }
 }
@@ -1,11 +1,15 @@
 package course.concurrency.exams.auction;
 
 public class Bid {
-    private Long id;
-    private Long participantId;
-    private Long price;
+    private final long id;
+    private final long participantId;
+    private final long price;
 
     public Bid(Long id, Long participantId, Long price) {
+        this(id.longValue(), participantId.longValue(), price.longValue());
+    }
+
+    public Bid(long id, long participantId, long price) {
         this.id = id;
         this.participantId = participantId;
         this.price = price;
@@ -22,4 +26,17 @@ public class Bid {
     public Long getPrice() {
         return price;
     }
+
+    // primitive accessors for the propose hot path, no boxing
+    public long id() {
+        return id;
+    }
+
+    public long participantId() {
+        return participantId;
+    }
+
+    public long price() {
+        return price;
+    }
 }
@@ -0,0 +1,283 @@
+package course.concurrency.exams.auction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only journal of accepted bids in a memory-mapped file.
+ *
+ * Every record has a fixed size and ends with a checksum of its fields, so
+ * replay skips records that were not written completely. Concurrent appends
+ * complete out of order, so a torn record may be followed by complete ones;
+ * recovery appends after the last complete record, never over one. Appends
+ * only reserve space with one atomic add and write into the mapping; the
+ * next segment is mapped in the background before appends reach it, so the
+ * append path makes no syscall. Pages reach the disk through the OS or
+ * through {@link #sync()}, which forces all appends made before it in one
+ * call (group commit), only for segments written since the last sync, and is
+ * run periodically with {@link SyncPolicy#PERIODIC}.
+ *
+ * Replay keeps the highest price per lot, so the order in which concurrent
+ * winners got their records does not matter.
+ */
+public class BidJournal implements AutoCloseable {
+
+    public enum SyncPolicy {
+        // leave write-back to the OS, force only on sync() and close()
+        OS,
+        // force dirty pages from a background thread at a fixed interval
+        PERIODIC
+    }
+
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(long lotId, long id, long participantId, long price);
+    }
+
+    static final int RECORD_SIZE = 5 * Long.BYTES;
+    private static final long CHECK_SEED = 0x5DEECE66DL;
+    // segments hold a whole number of records, so a record never spans two mappings
+    private static final long DEFAULT_SEGMENT_SIZE = RECORD_SIZE * (1L << 21);
+
+    private final FileChannel channel;
+    private final long segmentSize;
+    private final AtomicLong position = new AtomicLong();
+    private volatile Segment[] segments = new Segment[0];
+    private final Object growLock = new Object();
+    private final ExecutorService mapper;
+
+    // a force never holds the lock that appends may need
+    private final Object forceLock = new Object();
+    private final Object syncLock = new Object();
+    private long syncRequested;
+    private long syncCompleted;
+    private final ScheduledExecutorService syncer;
+
+    public BidJournal(Path file) {
+        this(file, SyncPolicy.OS, 0);
+    }
+
+    public BidJournal(Path file, SyncPolicy policy, long syncIntervalMillis) {
+        this(file, policy, syncIntervalMillis, DEFAULT_SEGMENT_SIZE);
+    }
+
+    BidJournal(Path file, SyncPolicy policy, long syncIntervalMillis, long segmentSize) {
+        this.segmentSize = segmentSize - segmentSize % RECORD_SIZE;
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            position.set(findEnd(channel.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // the segment appends go to next and the one after it
+        segment((int) (position.get() / this.segmentSize) + 1);
+        mapper = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "BidJournal_map");
+            t.setDaemon(true);
+            return t;
+        });
+        if (policy == SyncPolicy.PERIODIC) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "BidJournal_sync");
+                t.setDaemon(true);
+                return t;
+            });
+            syncer.scheduleWithFixedDelay(this::sync, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * Appends one record and returns the journal position after it.
+     */
+    public long append(long lotId, long id, long participantId, long price) {
+        long offset = position.getAndAdd(RECORD_SIZE);
+        int index = (int) (offset / segmentSize);
+        Segment written = segment(index);
+        MappedByteBuffer segment = written.buffer;
+        int at = (int) (offset % segmentSize);
+        if (at == 0) {
+            // exactly one append starts each segment, it has the next one mapped
+            mapAhead(index + 1);
+        }
+        // absolute puts only, the buffer's own position is never touched
+        segment.putLong(at, lotId);
+        segment.putLong(at + 8, id);
+        segment.putLong(at + 16, participantId);
+        segment.putLong(at + 24, price);
+        segment.putLong(at + 32, check(lotId, id, participantId, price));
+        // only the first write after a sync pays for the shared store
+        if (!written.dirty) {
+            written.dirty = true;
+        }
+        return offset + RECORD_SIZE;
+    }
+
+    public long append(long lotId, Bid bid) {
+        return append(lotId, bid.id(), bid.participantId(), bid.price());
+    }
+
+    /**
+     * Forces everything appended before this call to disk. Concurrent callers
+     * share one force: a caller only waits for the next force that started
+     * after it asked.
+     */
+    public void sync() {
+        long ticket;
+        synchronized (syncLock) {
+            ticket = ++syncRequested;
+        }
+        synchronized (forceLock) {
+            synchronized (syncLock) {
+                if (syncCompleted >= ticket) {
+                    return;
+                }
+                ticket = syncRequested;
+            }
+            for (Segment segment : segments) {
+                // cleared first, a write racing with the force marks it again
+                if (segment.dirty) {
+                    segment.dirty = false;
+                    segment.buffer.force();
+                }
+            }
+            synchronized (syncLock) {
+                syncCompleted = ticket;
+            }
+        }
+    }
+
+    /**
+     * Replays all complete records in append order, torn ones are skipped.
+     *
+     * @return the number of records replayed
+     */
+    public long replay(RecordConsumer consumer) {
+        long end = position.get();
+        long count = 0;
+        for (long offset = 0; offset < end; offset += RECORD_SIZE) {
+            MappedByteBuffer segment = segment((int) (offset / segmentSize)).buffer;
+            int at = (int) (offset % segmentSize);
+            if (isComplete(segment, at)) {
+                consumer.accept(segment.getLong(at), segment.getLong(at + 8),
+                        segment.getLong(at + 16), segment.getLong(at + 24));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Rebuilds the latest bid of every lot in the engine without notifying anyone.
+     */
+    public long replayInto(AuctionEngine engine) {
+        return replay(engine::restore);
+    }
+
+    public long size() {
+        return position.get() / RECORD_SIZE;
+    }
+
+    @Override
+    public void close() {
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        mapper.shutdown();
+        sync();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // mapped on the background thread, an append that gets there first maps it itself
+    private void mapAhead(int index) {
+        if (index < segments.length) {
+            return;
+        }
+        try {
+            mapper.execute(() -> segment(index));
+        } catch (RejectedExecutionException ignored) {
+            // closing
+        }
+    }
+
+    private Segment segment(int index) {
+        Segment[] current = segments;
+        if (index < current.length) {
+            return current[index];
+        }
+        synchronized (growLock) {
+            current = segments;
+            if (index >= current.length) {
+                Segment[] grown = Arrays.copyOf(current, index + 1);
+                try {
+                    for (int i = current.length; i <= index; i++) {
+                        grown[i] = new Segment(channel.map(FileChannel.MapMode.READ_WRITE, i * segmentSize, segmentSize));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                segments = grown;
+                current = grown;
+            }
+            return current[index];
+        }
+    }
+
+    /*
+     * Offset after the last complete record. Complete records may follow torn
+     * ones, appends finish out of order, so the whole file is scanned and
+     * nothing complete is overwritten.
+     */
+    private long findEnd(long fileSize) {
+        long end = 0;
+        for (long offset = 0; offset + RECORD_SIZE <= fileSize; offset += RECORD_SIZE) {
+            MappedByteBuffer segment = segment((int) (offset / segmentSize)).buffer;
+            if (isComplete(segment, (int) (offset % segmentSize))) {
+                end = offset + RECORD_SIZE;
+            }
+        }
+        return end;
+    }
+
+    private static boolean isComplete(MappedByteBuffer segment, int at) {
+        long check = check(segment.getLong(at), segment.getLong(at + 8),
+                segment.getLong(at + 16), segment.getLong(at + 24));
+        return segment.getLong(at + 32) == check;
+    }
+
+    private static final class Segment {
+        final MappedByteBuffer buffer;
+        // written since it was last forced; new mappings may have grown the file
+        volatile boolean dirty = true;
+
+        Segment(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    private static long check(long lotId, long id, long participantId, long price) {
+        long h = CHECK_SEED;
+        h = (h ^ lotId) * 0x9E3779B97F4A7C15L;
+        h = (h ^ id) * 0x9E3779B97F4A7C15L;
+        h = (h ^ participantId) * 0x9E3779B97F4A7C15L;
+        h = (h ^ price) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 31);
+    }
+}
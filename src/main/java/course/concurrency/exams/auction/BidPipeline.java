@@ -0,0 +1,294 @@
+package course.concurrency.exams.auction;
+
+import course.concurrency.exams.LogHistogram;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Staged bid ingestion in front of the auction:
+ *
+ *   gateway threads -> MPSC ring per shard -> shard thread -> SPSC ring -> notifier thread
+ *
+ * Lots are split into shards by hash. Each shard thread is the only writer of
+ * its lots, so bids are applied with plain stores; readers from other threads
+ * use a per-shard sequence lock. Outdated bids go downstream to one notifier
+ * thread, so gateway threads never pay for CAS retries or notifier calls.
+ *
+ * The time from {@link #submit} to the bid being applied, and to the outbid
+ * message being handed to the {@link Notifier}, is recorded in histograms.
+ */
+public class BidPipeline implements AutoCloseable {
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle VERSION;
+
+    static {
+        try {
+            VERSION = MethodHandles.lookup().findVarHandle(Shard.class, "version", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // record layout, inbound and outbound rings share it
+    private static final int LOT = 0;
+    private static final int ID = 1;
+    private static final int PARTICIPANT = 2;
+    private static final int PRICE = 3;
+    private static final int SUBMITTED = 4;
+    private static final int FIELDS = 5;
+
+    private static final int INITIAL_LOTS_PER_SHARD = 1 << 12;
+    private static final int MAX_BATCH = 256;
+
+    private final Notifier notifier;
+    private final Shard[] shards;
+    private final int shardMask;
+    private final Thread notifierThread;
+    private final LogHistogram notifiedLatency = new LogHistogram();
+    private volatile boolean running = true;
+
+    public BidPipeline(Notifier notifier) {
+        this(notifier, Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 1 << 16);
+    }
+
+    public BidPipeline(Notifier notifier, int shardCount, int ringSize) {
+        this.notifier = notifier;
+        int count = shardCount <= 1 ? 1 : Integer.highestOneBit(shardCount - 1) << 1;
+        this.shards = new Shard[count];
+        this.shardMask = count - 1;
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(ringSize);
+            Thread t = new Thread(shards[i]::run, "BidPipeline_shard-" + i);
+            t.setDaemon(true);
+            shards[i].thread = t;
+            t.start();
+        }
+        notifierThread = new Thread(this::runNotifier, "BidPipeline_notifier");
+        notifierThread.setDaemon(true);
+        notifierThread.start();
+    }
+
+    public void submit(long lotId, Bid bid) {
+        submit(lotId, bid.id(), bid.participantId(), bid.price());
+    }
+
+    /**
+     * Queues a bid, waiting only while the shard's ring is full.
+     */
+    public void submit(long lotId, long id, long participantId, long price) {
+        if (lotId == LotTable.EMPTY) {
+            throw new IllegalArgumentException("Lot id " + LotTable.EMPTY + " is reserved");
+        }
+        if (!running) {
+            throw new IllegalStateException("Pipeline is closed");
+        }
+        long hash = LotTable.mix(lotId);
+        LongRingBuffer ring = shards[(int) (hash >>> 32) & shardMask].inbound;
+        long sequence = ring.claim();
+        ring.put(sequence, LOT, lotId);
+        ring.put(sequence, ID, id);
+        ring.put(sequence, PARTICIPANT, participantId);
+        ring.put(sequence, PRICE, price);
+        ring.put(sequence, SUBMITTED, System.nanoTime());
+        ring.publish(sequence);
+    }
+
+    public Bid getLatestBid(long lotId) {
+        long hash = LotTable.mix(lotId);
+        return shards[(int) (hash >>> 32) & shardMask].read(lotId, (int) hash);
+    }
+
+    /**
+     * Waits until every bid submitted before the call is applied and its
+     * outbid message is handed to the notifier.
+     */
+    public void flush() {
+        for (Shard shard : shards) {
+            long target = shard.inbound.claimedCount();
+            for (int idle = 0; shard.inbound.nextToConsume() < target; idle = LongRingBuffer.nextIdle(idle)) {
+                LongRingBuffer.idle(idle);
+            }
+            long outboundTarget = shard.outboundPublished;
+            for (int idle = 0; shard.outbound.nextToConsume() < outboundTarget; idle = LongRingBuffer.nextIdle(idle)) {
+                LongRingBuffer.idle(idle);
+            }
+        }
+    }
+
+    public LogHistogram getAppliedLatencyNanos() {
+        LogHistogram merged = new LogHistogram();
+        for (Shard shard : shards) {
+            merged.add(shard.appliedLatency);
+        }
+        return merged;
+    }
+
+    public LogHistogram getNotifiedLatencyNanos() {
+        return new LogHistogram().add(notifiedLatency);
+    }
+
+    @Override
+    public void close() {
+        flush();
+        running = false;
+        List<Thread> threads = new ArrayList<>();
+        for (Shard shard : shards) {
+            threads.add(shard.thread);
+        }
+        threads.add(notifierThread);
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void runNotifier() {
+        long[] next = new long[shards.length];
+        int idle = 0;
+        while (running || idle == 0) {
+            int handled = 0;
+            for (int i = 0; i < shards.length; i++) {
+                LongRingBuffer ring = shards[i].outbound;
+                long sequence = next[i];
+                while (handled < MAX_BATCH && ring.isPublished(sequence)) {
+                    Bid outdated = new Bid(ring.get(sequence, ID), ring.get(sequence, PARTICIPANT), ring.get(sequence, PRICE));
+                    notifier.sendOutdatedMessage(ring.get(sequence, LOT), outdated);
+                    notifiedLatency.record(System.nanoTime() - ring.get(sequence, SUBMITTED));
+                    sequence++;
+                    handled++;
+                }
+                if (sequence != next[i]) {
+                    next[i] = sequence;
+                    ring.consumedUpTo(sequence);
+                }
+            }
+            idle = handled == 0 ? LongRingBuffer.nextIdle(idle) : 0;
+            if (idle > 0) {
+                LongRingBuffer.idle(idle);
+            }
+        }
+    }
+
+    private final class Shard {
+        final LongRingBuffer inbound;
+        final LongRingBuffer outbound;
+        final LogHistogram appliedLatency = new LogHistogram();
+        Thread thread;
+
+        // written by the shard thread only
+        private LotTable table = new LotTable(INITIAL_LOTS_PER_SHARD);
+        private int size;
+        private long outboundSequence;
+        // odd while the shard thread is changing the table
+        private volatile long version;
+        private volatile LotTable published = table;
+        volatile long outboundPublished;
+
+        Shard(int ringSize) {
+            inbound = new LongRingBuffer(ringSize, FIELDS, true);
+            outbound = new LongRingBuffer(ringSize, FIELDS, false);
+        }
+
+        void run() {
+            long sequence = 0;
+            int idle = 0;
+            while (running || idle == 0) {
+                int handled = 0;
+                while (handled < MAX_BATCH && inbound.isPublished(sequence)) {
+                    apply(sequence);
+                    sequence++;
+                    handled++;
+                }
+                if (handled > 0) {
+                    // before consumedUpTo, flush() reads them in the opposite order
+                    outboundPublished = outboundSequence;
+                    inbound.consumedUpTo(sequence);
+                    idle = 0;
+                } else {
+                    idle = LongRingBuffer.nextIdle(idle);
+                    LongRingBuffer.idle(idle);
+                }
+            }
+        }
+
+        private void apply(long sequence) {
+            long lotId = inbound.get(sequence, LOT);
+            long price = inbound.get(sequence, PRICE);
+            int hash = (int) LotTable.mix(lotId);
+            int slot = table.find(lotId, hash);
+            boolean fresh = table.keys[slot] == LotTable.EMPTY;
+            if (fresh || price > table.prices[slot]) {
+                if (!fresh) {
+                    long out = outbound.claim();
+                    outbound.put(out, LOT, lotId);
+                    outbound.put(out, ID, table.ids[slot]);
+                    outbound.put(out, PARTICIPANT, table.participants[slot]);
+                    outbound.put(out, PRICE, table.prices[slot]);
+                    outbound.put(out, SUBMITTED, inbound.get(sequence, SUBMITTED));
+                    outbound.publish(out);
+                    outboundSequence = out + 1;
+                }
+                beginWrite();
+                if (fresh && size + 1 > table.keys.length / 2) {
+                    table = table.grow();
+                    published = table;
+                    slot = table.find(lotId, hash);
+                }
+                table.keys[slot] = lotId;
+                table.ids[slot] = inbound.get(sequence, ID);
+                table.participants[slot] = inbound.get(sequence, PARTICIPANT);
+                table.prices[slot] = price;
+                endWrite();
+                if (fresh) {
+                    size++;
+                }
+            }
+            appliedLatency.record(System.nanoTime() - inbound.get(sequence, SUBMITTED));
+        }
+
+        private void beginWrite() {
+            VERSION.setOpaque(this, version + 1);
+            VarHandle.releaseFence();
+        }
+
+        private void endWrite() {
+            VERSION.setRelease(this, version + 1);
+        }
+
+        Bid read(long lotId, int hash) {
+            for (;;) {
+                long before = (long) VERSION.getAcquire(this);
+                if ((before & 1) == 0) {
+                    LotTable t = published;
+                    int mask = t.keys.length - 1;
+                    Bid bid = null;
+                    // bounded probe, a torn read may see a table without empty slots
+                    for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                        long key = (long) LONGS.getOpaque(t.keys, i);
+                        if (key == lotId) {
+                            bid = new Bid((long) LONGS.getOpaque(t.ids, i), (long) LONGS.getOpaque(t.participants, i),
+                                    (long) LONGS.getOpaque(t.prices, i));
+                            break;
+                        }
+                        if (key == LotTable.EMPTY) {
+                            break;
+                        }
+                    }
+                    VarHandle.acquireFence();
+                    if ((long) VERSION.getOpaque(this) == before) {
+                        return bid;
+                    }
+                }
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
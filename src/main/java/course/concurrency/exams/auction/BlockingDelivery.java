@@ -0,0 +1,85 @@
+package course.concurrency.exams.auction;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Imitates a blocking client: every message occupies an executor thread for
+ * the whole send. Throughput is bounded by the number of threads the executor
+ * is willing to run.
+ */
+public class BlockingDelivery implements DeliveryBackend {
+
+    private final ExecutorService executor;
+    private final long sendMillis;
+    private final LongAdder inFlight = new LongAdder();
+    private volatile boolean stopped;
+
+    public BlockingDelivery(ExecutorService executor, long sendMillis) {
+        this.executor = executor;
+        this.sendMillis = sendMillis;
+    }
+
+    @Override
+    public CompletableFuture<Void> deliver(long participantId, Collection<Bid> bids) {
+        CompletableFuture<Void> sent = new CompletableFuture<>();
+        execute(sent);
+        return sent;
+    }
+
+    @Override
+    public void send(long participantId, Collection<Bid> bids) {
+        execute(null);
+    }
+
+    // the future, if any, completes once the message no longer counts as in flight
+    private void execute(CompletableFuture<Void> sent) {
+        inFlight.increment();
+        try {
+            executor.execute(() -> {
+                boolean dropped = stopped;
+                try {
+                    if (!dropped) {
+                        imitateSending();
+                    }
+                } finally {
+                    inFlight.decrement();
+                }
+                if (sent != null) {
+                    if (dropped) {
+                        sent.cancel(false);
+                    } else {
+                        sent.complete(null);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.decrement();
+            throw e;
+        }
+    }
+
+    private void imitateSending() {
+        try {
+            Thread.sleep(sendMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public long inFlight() {
+        return inFlight.sum();
+    }
+
+    /**
+     * Messages not being sent yet are dropped, their futures are cancelled.
+     */
+    @Override
+    public void shutdown() {
+        stopped = true;
+        executor.shutdown();
+    }
+}
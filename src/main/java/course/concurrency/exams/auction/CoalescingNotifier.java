@@ -0,0 +1,218 @@
+package course.concurrency.exams.auction;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects outbid events into a bounded queue and flushes them once per
+ * window. A flush groups the events by participant and sends each group in
+ * one call; for every participant only the latest event per lot is kept.
+ *
+ * At most {@code maxInFlightSends} sends are outstanding at once; the flush
+ * waits for one to finish before starting the next. A slow backend so stalls
+ * the flush and fills the queue, and when the queue is full the caller blocks
+ * for at most {@code maxBlockMillis} and the event is dropped after that.
+ */
+public class CoalescingNotifier extends Notifier {
+
+    private static final int DEFAULT_MAX_IN_FLIGHT_SENDS = 1024;
+
+    private final BlockingQueue<Event> queue;
+    private final int maxInFlightSends;
+    private final Semaphore sendPermits;
+    private final long maxBlockMillis;
+    private final int maxBatch;
+    private final ScheduledExecutorService flusher;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedMessages = new LongAdder();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    private final LongAdder sendCount = new LongAdder();
+    private final LongAdder sendNanos = new LongAdder();
+    private final AtomicLong maxSendNanos = new AtomicLong();
+
+    public CoalescingNotifier() {
+        this(100, 100_000, 10, 10_000);
+    }
+
+    public CoalescingNotifier(long windowMillis, int queueCapacity, long maxBlockMillis, int maxBatch) {
+        this(DeliveryBackend.fixedPool(), windowMillis, queueCapacity, maxBlockMillis, maxBatch);
+    }
+
+    public CoalescingNotifier(DeliveryBackend backend, long windowMillis, int queueCapacity,
+                              long maxBlockMillis, int maxBatch) {
+        this(backend, windowMillis, queueCapacity, maxBlockMillis, maxBatch, DEFAULT_MAX_IN_FLIGHT_SENDS);
+    }
+
+    public CoalescingNotifier(DeliveryBackend backend, long windowMillis, int queueCapacity,
+                              long maxBlockMillis, int maxBatch, int maxInFlightSends) {
+        super(backend);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxInFlightSends = maxInFlightSends;
+        this.sendPermits = new Semaphore(maxInFlightSends);
+        this.maxBlockMillis = maxBlockMillis;
+        this.maxBatch = maxBatch;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "CoalescingNotifier_flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void sendOutdatedMessage(Bid bid) {
+        sendOutdatedMessage(0L, bid);
+    }
+
+    @Override
+    public void sendOutdatedMessage(long lotId, Bid bid) {
+        try {
+            if (queue.offer(new Event(lotId, bid), maxBlockMillis, TimeUnit.MILLISECONDS)) {
+                accepted.increment();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dropped.increment();
+    }
+
+    // drains one window, package-private so tests can flush without waiting
+    void flush() {
+        List<Event> events = new ArrayList<>();
+        while (queue.drainTo(events, maxBatch) > 0) {
+            Map<Long, Map<Long, Bid>> byParticipant = new LinkedHashMap<>();
+            for (Event event : events) {
+                Map<Long, Bid> byLot = byParticipant.computeIfAbsent(event.bid.participantId(), p -> new LinkedHashMap<>());
+                if (byLot.put(event.lotId, event.bid) != null) {
+                    coalesced.increment();
+                }
+            }
+            byParticipant.forEach((participantId, byLot) -> {
+                Collection<Bid> batch = byLot.values();
+                batches.increment();
+                batchedMessages.add(batch.size());
+                maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+                timedSend(participantId, batch);
+            });
+            events.clear();
+        }
+    }
+
+    // one message for all lots the participant was outbid on, once a send slot is free
+    private void timedSend(long participantId, Collection<Bid> bids) {
+        try {
+            sendPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.add(bids.size());
+            return;
+        }
+        long start = System.nanoTime();
+        CompletableFuture<Void> sent;
+        try {
+            sent = deliver(participantId, bids);
+        } catch (RuntimeException e) {
+            sendPermits.release();
+            dropped.add(bids.size());
+            return;
+        }
+        sent.whenComplete((ignored, ex) -> {
+            sendPermits.release();
+            if (ex != null) {
+                // dropped by the backend, not a send
+                dropped.add(bids.size());
+                return;
+            }
+            long elapsed = System.nanoTime() - start;
+            sendCount.increment();
+            sendNanos.add(elapsed);
+            maxSendNanos.accumulateAndGet(elapsed, Math::max);
+        });
+    }
+
+    // events waiting for a flush plus sends not finished yet
+    public int getQueueDepth() {
+        return queue.size() + getInFlightSendCount();
+    }
+
+    public int getInFlightSendCount() {
+        return maxInFlightSends - sendPermits.availablePermits();
+    }
+
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    public double getAverageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0 : (double) batchedMessages.sum() / count;
+    }
+
+    public long getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    public long getSendCount() {
+        return sendCount.sum();
+    }
+
+    public double getAverageSendLatencyMillis() {
+        long count = sendCount.sum();
+        return count == 0 ? 0 : sendNanos.sum() / 1_000_000.0 / count;
+    }
+
+    public double getMaxSendLatencyMillis() {
+        return maxSendNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        super.shutdown();
+    }
+
+    private static final class Event {
+        final long lotId;
+        final Bid bid;
+
+        Event(long lotId, Bid bid) {
+            this.lotId = lotId;
+            this.bid = bid;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package course.concurrency.exams.auction;
+
+import course.concurrency.exams.VirtualThreads;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+/**
+ * Sends outbid messages for {@link Notifier}. The returned future completes
+ * when the message has been sent, so callers never have to block on it.
+ */
+public interface DeliveryBackend {
+
+    long SEND_MILLIS = 2000;
+
+    CompletableFuture<Void> deliver(long participantId, Collection<Bid> bids);
+
+    // fire-and-forget variant, backends may skip building the future
+    default void send(long participantId, Collection<Bid> bids) {
+        deliver(participantId, bids);
+    }
+
+    // messages accepted but not sent yet
+    long inFlight();
+
+    // takes no more messages; the ones not sent yet are dropped, their futures cancelled
+    void shutdown();
+
+    // blocking sends on a fixed pool, one platform thread per message being sent
+    static DeliveryBackend fixedPool() {
+        return new BlockingDelivery(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()), SEND_MILLIS);
+    }
+
+    // non-blocking sends completed by a single scheduler thread
+    static DeliveryBackend async() {
+        return new ScheduledDelivery(SEND_MILLIS);
+    }
+
+    // blocking sends, one virtual thread per message; needs JDK 21+
+    static DeliveryBackend virtualThreads() {
+        return new BlockingDelivery(VirtualThreads.newPerTaskExecutor(), SEND_MILLIS);
+    }
+}
@@ -0,0 +1,38 @@
+package course.concurrency.exams.auction;
+
+/**
+ * Records every bid the wrapped auction accepts in a {@link BidJournal} under
+ * the given lot id.
+ */
+public class JournaledAuction implements Auction {
+
+    private final Auction auction;
+    private final BidJournal journal;
+    private final long lotId;
+
+    public JournaledAuction(Auction auction, BidJournal journal, long lotId) {
+        this.auction = auction;
+        this.journal = journal;
+        this.lotId = lotId;
+    }
+
+    public boolean propose(Bid bid) {
+        if (auction.propose(bid)) {
+            journal.append(lotId, bid);
+            return true;
+        }
+        return false;
+    }
+
+    public boolean propose(long id, long participantId, long price) {
+        if (auction.propose(id, participantId, price)) {
+            journal.append(lotId, id, participantId, price);
+            return true;
+        }
+        return false;
+    }
+
+    public Bid getLatestBid() {
+        return auction.getLatestBid();
+    }
+}
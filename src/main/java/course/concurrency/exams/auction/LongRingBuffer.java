@@ -0,0 +1,127 @@
+package course.concurrency.exams.auction;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded ring of fixed-size records of longs with a single consumer, in the
+ * style of the Disruptor: producers claim a sequence, write the record in
+ * place and publish it by storing the sequence into the slot's marker. With
+ * one producer the claim is a plain increment, with several it is one atomic
+ * add. The consumer needs no atomics at all.
+ *
+ * A full ring makes producers wait for the consumer, which is the
+ * backpressure of the pipeline.
+ */
+class LongRingBuffer {
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle CONSUMED_CACHE;
+
+    static {
+        try {
+            CONSUMED_CACHE = MethodHandles.lookup().findVarHandle(LongRingBuffer.class, "consumedCache", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final int SPINS = 100;
+    private static final int YIELDS = 100;
+
+    private final int mask;
+    private final int fields;
+    private final long[] records;
+    private final long[] published;
+    private final boolean multiProducer;
+
+    private final AtomicLong claimed = new AtomicLong();
+    private long singleProducerClaimed;
+    // next sequence the consumer will read, written by the consumer only
+    private volatile long consumed;
+    // producer-side cache of consumed to avoid reading the volatile on every claim;
+    // shared by all producers in multi-producer mode, so it is accessed opaquely:
+    // a stale value only sends a producer back to the volatile, it is never ahead of it
+    @SuppressWarnings("unused")
+    private long consumedCache;
+
+    LongRingBuffer(int capacity, int fields, boolean multiProducer) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.fields = fields;
+        this.records = new long[capacity * fields];
+        this.published = new long[capacity];
+        this.multiProducer = multiProducer;
+        for (int i = 0; i < capacity; i++) {
+            published[i] = i - (long) capacity;
+        }
+    }
+
+    /**
+     * Claims the next sequence, waiting while the ring is full.
+     * The caller fills it with {@link #put} and then calls {@link #publish}.
+     */
+    long claim() {
+        long sequence = multiProducer ? claimed.getAndIncrement() : singleProducerClaimed++;
+        long wrapPoint = sequence - (mask + 1);
+        if (wrapPoint >= (long) CONSUMED_CACHE.getOpaque(this)) {
+            long current;
+            for (int idle = 0; wrapPoint >= (current = consumed); idle = nextIdle(idle)) {
+                idle(idle);
+            }
+            CONSUMED_CACHE.setOpaque(this, current);
+        }
+        return sequence;
+    }
+
+    void put(long sequence, int field, long value) {
+        records[(int) (sequence & mask) * fields + field] = value;
+    }
+
+    void publish(long sequence) {
+        LONGS.setRelease(published, (int) (sequence & mask), sequence);
+    }
+
+    // consumer side
+
+    boolean isPublished(long sequence) {
+        return (long) LONGS.getAcquire(published, (int) (sequence & mask)) == sequence;
+    }
+
+    long get(long sequence, int field) {
+        return records[(int) (sequence & mask) * fields + field];
+    }
+
+    long nextToConsume() {
+        return consumed;
+    }
+
+    // frees every slot up to the given sequence for producers
+    void consumedUpTo(long next) {
+        consumed = next;
+    }
+
+    long claimedCount() {
+        return multiProducer ? claimed.get() : singleProducerClaimed;
+    }
+
+    // the next wait iteration, saturated so that a long stall keeps parking
+    // instead of overflowing back into the busy-spin phase
+    static int nextIdle(int iteration) {
+        return iteration < SPINS + YIELDS ? iteration + 1 : iteration;
+    }
+
+    static void idle(int iteration) {
+        if (iteration < SPINS) {
+            Thread.onSpinWait();
+        } else if (iteration < SPINS + YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(50_000);
+        }
+    }
+}
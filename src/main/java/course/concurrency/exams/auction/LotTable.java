@@ -0,0 +1,63 @@
+package course.concurrency.exams.auction;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressed table of per-lot winning bids in parallel primitive arrays.
+ * Not thread-safe, owners decide how writes are guarded and published.
+ */
+final class LotTable {
+
+    static final long EMPTY = Long.MIN_VALUE;
+    // deadline markers: no deadline set, lot closed for good
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+    static final long CLOSED = Long.MIN_VALUE;
+
+    final long[] keys;
+    final long[] ids;
+    final long[] participants;
+    final long[] prices;
+    final long[] deadlines;
+
+    LotTable(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        ids = new long[capacity];
+        participants = new long[capacity];
+        prices = new long[capacity];
+        deadlines = new long[capacity];
+        Arrays.fill(deadlines, NO_DEADLINE);
+    }
+
+    static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    // slot holding the key or the empty slot where it belongs
+    int find(long key, int hash) {
+        int mask = keys.length - 1;
+        int i = hash & mask;
+        while (keys[i] != key && keys[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    // copy with twice the capacity
+    LotTable grow() {
+        LotTable resized = new LotTable(keys.length << 1);
+        for (int i = 0; i < keys.length; i++) {
+            long key = keys[i];
+            if (key != EMPTY) {
+                int slot = resized.find(key, (int) mix(key));
+                resized.keys[slot] = key;
+                resized.ids[slot] = ids[i];
+                resized.participants[slot] = participants[i];
+                resized.prices[slot] = prices[i];
+                resized.deadlines[slot] = deadlines[i];
+            }
+        }
+        return resized;
+    }
+}
@@ -1,24 +1,39 @@
 package course.concurrency.exams.auction;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class Notifier {
 
-    private final ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime()
-                                                                                         .availableProcessors());
+    private final DeliveryBackend backend;
+
+    public Notifier() {
+        this(DeliveryBackend.fixedPool());
+    }
+
+    public Notifier(DeliveryBackend backend) {
+        this.backend = backend;
+    }
 
     public void sendOutdatedMessage(Bid bid) {
-        executorService.execute(this::imitateSending);
+        backend.send(bid.participantId(), List.of(bid));
+    }
+
+    // lot-aware variant for multi-lot auctions, plain notifier ignores the lot
+    public void sendOutdatedMessage(long lotId, Bid bid) {
+        sendOutdatedMessage(bid);
+    }
+
+    protected CompletableFuture<Void> deliver(long participantId, Collection<Bid> bids) {
+        return backend.deliver(participantId, bids);
     }
 
-    private void imitateSending() {
-        try {
-            Thread.sleep(2000);
-        } catch (InterruptedException e) {}
+    public long getInFlight() {
+        return backend.inFlight();
     }
 
     public void shutdown() {
-        executorService.shutdown();
+        backend.shutdown();
     }
 }
@@ -0,0 +1,41 @@
+package course.concurrency.exams.auction;
+
+import java.util.List;
+
+/**
+ * Adds a bounded history of the highest bids to any auction, e.g. for
+ * fallback to the runner-up or second-price settlement. Every proposed bid is
+ * offered to the history, including the ones the auction rejects.
+ */
+public class RankedAuction implements Auction {
+
+    private final Auction auction;
+    private final TopKBids topBids;
+
+    public RankedAuction(Auction auction, int k) {
+        this.auction = auction;
+        this.topBids = new TopKBids(k);
+    }
+
+    public boolean propose(Bid bid) {
+        topBids.offer(bid);
+        return auction.propose(bid);
+    }
+
+    public Bid getLatestBid() {
+        return auction.getLatestBid();
+    }
+
+    public List<Bid> getTopBids() {
+        return topBids.snapshot();
+    }
+
+    // price the winner pays in a second-price auction, the winner's own if nobody else bid
+    public long getSecondPrice() {
+        List<Bid> top = topBids.snapshot();
+        if (top.isEmpty()) {
+            return Long.MIN_VALUE;
+        }
+        return top.get(Math.min(1, top.size() - 1)).price();
+    }
+}
@@ -0,0 +1,72 @@
+package course.concurrency.exams.auction;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Imitates a non-blocking client: a send is a timer that completes the future
+ * when the reply would arrive, so no thread waits for it. One scheduler
+ * thread keeps any number of messages in flight.
+ */
+public class ScheduledDelivery implements DeliveryBackend {
+
+    private final ScheduledExecutorService scheduler;
+    private final long sendMillis;
+    private final LongAdder inFlight = new LongAdder();
+    // sends whose reply has not arrived, cancelled on shutdown
+    private final Set<CompletableFuture<Void>> pending = ConcurrentHashMap.newKeySet();
+
+    public ScheduledDelivery(long sendMillis) {
+        this.sendMillis = sendMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ScheduledDelivery");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> deliver(long participantId, Collection<Bid> bids) {
+        CompletableFuture<Void> sent = new CompletableFuture<>();
+        inFlight.increment();
+        pending.add(sent);
+        try {
+            scheduler.schedule(() -> {
+                if (pending.remove(sent)) {
+                    inFlight.decrement();
+                    sent.complete(null);
+                }
+            }, sendMillis, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            pending.remove(sent);
+            inFlight.decrement();
+            throw e;
+        }
+        return sent;
+    }
+
+    @Override
+    public long inFlight() {
+        return inFlight.sum();
+    }
+
+    /**
+     * Messages not sent yet are dropped, their futures are cancelled.
+     */
+    @Override
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (CompletableFuture<Void> sent : pending) {
+            if (pending.remove(sent)) {
+                inFlight.decrement();
+                sent.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package course.concurrency.exams.auction;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the K highest bids. Inserts and reads go through a lock-free skip
+ * list; once K bids are held, anything not above the K-th price is rejected
+ * by one volatile read. The K-th price only grows, so the threshold can be
+ * raised without coordination.
+ */
+public class TopKBids {
+
+    private static final Comparator<Bid> HIGHEST_FIRST = Comparator.comparingLong(Bid::price).reversed()
+            .thenComparingLong(Bid::id)
+            .thenComparingLong(Bid::participantId);
+
+    private final int k;
+    private final ConcurrentSkipListSet<Bid> bids = new ConcurrentSkipListSet<>(HIGHEST_FIRST);
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong threshold = new AtomicLong(Long.MIN_VALUE);
+
+    public TopKBids(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        this.k = k;
+    }
+
+    /**
+     * @return false if the bid is not among the K highest at the moment of the call
+     */
+    public boolean offer(Bid bid) {
+        if (bid.price() <= threshold.get() || !bids.add(bid)) {
+            return false;
+        }
+        boolean kept = true;
+        if (size.incrementAndGet() > k) {
+            Bid evicted = bids.pollLast();
+            if (evicted != null) {
+                size.decrementAndGet();
+                kept = evicted != bid;
+                threshold.accumulateAndGet(evicted.price(), Math::max);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Weakly consistent copy of the kept bids, highest first. Never blocks
+     * concurrent offers.
+     */
+    public List<Bid> snapshot() {
+        List<Bid> result = new ArrayList<>(k);
+        Iterator<Bid> it = bids.iterator();
+        while (it.hasNext() && result.size() < k) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    public int getK() {
+        return k;
+    }
+}
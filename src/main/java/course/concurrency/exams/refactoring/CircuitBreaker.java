@@ -0,0 +1,111 @@
+package course.concurrency.exams.refactoring;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of one router admin address.
+ *
+ * After {@code failureThreshold} failures in a row the breaker opens and the
+ * router is left alone for a backoff that doubles with every trip, up to a
+ * maximum, and is jittered so breakers opened together do not probe
+ * together. When the backoff is over one probe is let through (half-open):
+ * its success closes the breaker, its failure opens it again.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long baseBackoffNanos;
+    private final long maxBackoffNanos;
+    private final LongSupplier clock;
+
+    // guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int trips;
+    private long openUntil;
+    private boolean probing;
+
+    public CircuitBreaker(int failureThreshold, long baseBackoffMillis, long maxBackoffMillis) {
+        this(failureThreshold, baseBackoffMillis, maxBackoffMillis, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, long baseBackoffMillis, long maxBackoffMillis, LongSupplier clock) {
+        this.failureThreshold = failureThreshold;
+        this.baseBackoffNanos = TimeUnit.MILLISECONDS.toNanos(baseBackoffMillis);
+        this.maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(maxBackoffMillis);
+        this.clock = clock;
+    }
+
+    /**
+     * @return true if the router may be called now; in the half-open state
+     * only the first caller gets true until its result is recorded
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() - openUntil < 0) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probing = true;
+                return true;
+            default:
+                if (probing) {
+                    return false;
+                }
+                probing = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trips = 0;
+        probing = false;
+    }
+
+    /**
+     * @return true if this failure opened the breaker
+     */
+    public synchronized boolean onFailure() {
+        probing = false;
+        if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+            open();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gives back a call let through by {@link #tryAcquire()} that was never
+     * made. The state stays as it is, a half-open breaker lets the next probe
+     * through.
+     */
+    public synchronized void release() {
+        probing = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void open() {
+        trips++;
+        long backoff = baseBackoffNanos << Math.min(trips - 1, 30);
+        if (backoff <= 0 || backoff > maxBackoffNanos) {
+            backoff = maxBackoffNanos;
+        }
+        // between half and the full backoff
+        backoff -= ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        state = State.OPEN;
+        consecutiveFailures = 0;
+        openUntil = clock.getAsLong() + backoff;
+    }
+}
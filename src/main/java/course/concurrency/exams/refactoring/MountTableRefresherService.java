@@ -1,15 +1,34 @@
 package course.concurrency.exams.refactoring;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
 
 
 public class MountTableRefresherService {
 
+    private static final Logger LOG = Logger.getLogger(MountTableRefresherService.class.getName());
+
+    private static final int NO_CLIENT_LIMIT = Integer.MAX_VALUE;
+    private static final int REFRESH_PARALLELISM = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    // a refresh and its hedge
+    private static final int REFRESHES_PER_ROUTER = 2;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 1000;
+
     private Others.RouterStore routerStore = new Others.RouterStore();
     private long cacheUpdateTimeout;
+    private long minRefreshTimeout = 1;
+    private long refreshDebounceMillis;
+    private boolean hedgingEnabled;
+    // refreshes of one round in flight at once, so none waits out its timeout in a queue
+    private int refreshConcurrency = REFRESH_PARALLELISM;
 
     /**
      * All router admin clients cached. So no need to create the client again and
@@ -17,33 +36,100 @@ public class MountTableRefresherService {
      * objects.
      */
     private Others.LoadingCache<String, Others.RouterClient> routerClientsCache;
+    // below the router count every round evicts and reconnects clients,
+    // by default every router keeps one and departed ones expire
+    private int maxCachedClients = NO_CLIENT_LIMIT;
+
+    /**
+     * Opens connections to router admins for the cached clients, has to be
+     * set before {@link #serviceInit()}.
+     */
+    private Others.RouterClient.Connector routerConnector;
 
     /**
      * Removes expired RouterClient from routerClientsCache.
      */
     private ScheduledExecutorService clientCacheCleanerScheduler;
 
+    /**
+     * Runs the blocking refresh calls, so they never occupy the common pool.
+     */
+    private RefreshExecutor refreshExecutor = RefreshExecutor.fixed(REFRESH_PARALLELISM, REFRESHES_PER_ROUTER);
+
+    /**
+     * Routers get their own timeout from their recent latency, never above
+     * cacheUpdateTimeout. With hedging a router still busy at its p95 gets a
+     * second call, and the first of the two to succeed counts.
+     */
+    private final RouterLatencyTracker latencyTracker = new RouterLatencyTracker();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgesWon = new LongAdder();
+
+    /**
+     * A router that keeps failing is left alone for a while instead of being
+     * called, and reconnected, every round.
+     */
+    private final ConcurrentHashMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private int breakerFailureThreshold = 3;
+    private long breakerBaseBackoffMillis = 1000;
+    private long breakerMaxBackoffMillis = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Every round's outcome per router, for scraping rather than the log.
+     */
+    private final RefreshMetrics metrics = new RefreshMetrics();
+    private volatile RefreshRoundResult lastRoundResult;
+
+    /**
+     * Runs refresh rounds one at a time. The round requested while another
+     * one runs is pending and shared by everyone asking in the meantime.
+     */
+    private final ScheduledExecutorService roundScheduler = newRoundScheduler();
+    private final Object roundLock = new Object();
+    private CompletableFuture<RefreshRoundResult> pendingRound;
+    private CompletableFuture<RefreshRoundResult> runningRound;
+    private long runningVersion;
+
     public void serviceInit() {
-        long routerClientMaxLiveTime = 15L;
+        if (routerConnector == null) {
+            throw new IllegalStateException("Router connector is not set");
+        }
+        long routerClientMaxLiveTime = TimeUnit.MINUTES.toMillis(5);
         this.cacheUpdateTimeout = 10L;
-        routerClientsCache = new Others.LoadingCache<>();
-        routerStore.getCachedRecords().stream().map(Others.RouterState::getAdminAddress)
-                .forEach(addr -> routerClientsCache.add(addr, new Others.RouterClient()));
-
         initClientCacheCleaner(routerClientMaxLiveTime);
+        // expired clients are closed on the cleaner thread
+        routerClientsCache = new Others.LoadingCache<>(addr -> new Others.RouterClient(addr, routerConnector),
+                routerClientMaxLiveTime, maxCachedClients, clientCacheCleanerScheduler);
+        routerStore.getCachedRecords().stream().map(Others.RouterState::getAdminAddress)
+                .forEach(routerClientsCache::get);
     }
 
     public void serviceStop() {
-        clientCacheCleanerScheduler.shutdown();
         // remove and close all admin clients
-        routerClientsCache.cleanUp();
+        routerClientsCache.invalidateAll();
+        clientCacheCleanerScheduler.shutdown();
+        roundScheduler.shutdown();
+        refreshExecutor.shutdown(SHUTDOWN_TIMEOUT_MILLIS);
+    }
+
+    private static ScheduledExecutorService newRoundScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r);
+            t.setName("MountTableRefresh_Rounds");
+            t.setDaemon(true);
+            return t;
+        });
+        // no idle thread for a service that is not refreshing
+        scheduler.setKeepAliveTime(1, TimeUnit.SECONDS);
+        scheduler.allowCoreThreadTimeOut(true);
+        return scheduler;
     }
 
     private void initClientCacheCleaner(long routerClientMaxLiveTime) {
         ThreadFactory tf = new ThreadFactory() {
             @Override
             public Thread newThread(Runnable r) {
-                Thread t = new Thread();
+                Thread t = new Thread(r);
                 t.setName("MountTableRefresh_ClientsCacheCleaner");
                 t.setDaemon(true);
                 return t;
@@ -64,89 +150,593 @@ public class MountTableRefresherService {
 
     /**
      * Refresh mount table cache of this router as well as all other routers.
+     * Blocks until a round that covers the caller's mount table edits is
+     * done, see {@link #refreshAsync()}.
      */
     public void refresh() {
-        List<Others.RouterState> cachedRecords = routerStore.getCachedRecords();
-        List<Others.UpdateTask> refreshTasks = new ArrayList<>();
-        for (Others.RouterState routerState : cachedRecords) {
+        refreshAsync().join();
+    }
+
+    /**
+     * Requests a refresh round. Callers refresh after editing mount entries,
+     * so every request records a mount table change first and every router
+     * is refreshed again. Callers share rounds: a round in progress is
+     * joined if it already refreshes to the current mount table version,
+     * otherwise the next pending round is. A new round starts
+     * {@code refreshDebounceMillis} after it was first requested, so a burst
+     * of edits costs one fan-out.
+     *
+     * @return future of the round result, shared by all callers of that round
+     */
+    public CompletableFuture<RefreshRoundResult> refreshAsync() {
+        routerStore.mountTableChanged();
+        long version = routerStore.getMountTableVersion();
+        synchronized (roundLock) {
+            if (runningRound != null && runningVersion >= version) {
+                return runningRound;
+            }
+            if (pendingRound == null) {
+                pendingRound = new CompletableFuture<>();
+                if (runningRound == null) {
+                    scheduleRound();
+                }
+            }
+            return pendingRound;
+        }
+    }
+
+    // called under roundLock
+    private void scheduleRound() {
+        try {
+            roundScheduler.schedule(this::runRound, refreshDebounceMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            pendingRound.completeExceptionally(e);
+            pendingRound = null;
+        }
+    }
+
+    private void runRound() {
+        CompletableFuture<RefreshRoundResult> round;
+        long targetVersion;
+        synchronized (roundLock) {
+            round = pendingRound;
+            pendingRound = null;
+            targetVersion = routerStore.getMountTableVersion();
+            runningRound = round;
+            runningVersion = targetVersion;
+        }
+        RefreshRoundResult result = null;
+        Throwable failure = null;
+        long start = System.nanoTime();
+        try {
+            List<RefreshRoundResult.RouterResult> routers = refreshStaleRouters(targetVersion);
+            result = new RefreshRoundResult(targetVersion, System.nanoTime() - start, routers);
+            metrics.record(result);
+            lastRoundResult = result;
+        } catch (Throwable e) {
+            failure = e;
+        }
+        synchronized (roundLock) {
+            runningRound = null;
+            // requested while this round was running
+            if (pendingRound != null) {
+                scheduleRound();
+            }
+        }
+        // only now, a caller that saw the round done must not join it again
+        if (failure == null) {
+            round.complete(result);
+        } else {
+            round.completeExceptionally(failure);
+        }
+    }
+
+    private List<RefreshRoundResult.RouterResult> refreshStaleRouters(long targetVersion) {
+        RefreshPlan plan = planRefresh(targetVersion);
+        if (plan.isEmpty()) {
+            return List.of();
+        }
+        return invokeRefresh(plan, result -> {}).join();
+    }
+
+    /**
+     * Refreshes the routers behind the current mount table version and
+     * publishes the outcome of every router as soon as it is known, skipped
+     * routers first. Once {@code quorum} routers have succeeded the stream
+     * completes, so the subscriber can go on with fresh state while the rest
+     * of the routers are still refreshed in the background. Without a quorum
+     * it completes after the last router.
+     *
+     * Like {@link #refreshAsync()} it records a mount table change first.
+     * The stream is a round of its own, queued on subscribe behind the round
+     * in progress like {@link #refreshAsync()} rounds are, and holding off
+     * the next one until its last router is done. It is not debounced and
+     * not shared with {@link #refreshAsync()} callers. A subscriber that
+     * cancels only stops receiving, the refresh goes on.
+     *
+     * @param quorum successes that complete the stream, 0 or less for all routers
+     */
+    public Flow.Publisher<RefreshRoundResult.RouterResult> refreshStream(int quorum) {
+        return subscriber -> {
+            routerStore.mountTableChanged();
+            try {
+                roundScheduler.execute(() -> runStreamRound(subscriber, quorum));
+            } catch (RejectedExecutionException e) {
+                failStream(subscriber, e);
+            }
+        };
+    }
+
+    // on the round scheduler, so no other round runs meanwhile
+    private void runStreamRound(Flow.Subscriber<? super RefreshRoundResult.RouterResult> subscriber, int quorum) {
+        long targetVersion = routerStore.getMountTableVersion();
+        long start = System.nanoTime();
+        RefreshPlan plan;
+        try {
+            plan = planRefresh(targetVersion);
+        } catch (Throwable e) {
+            failStream(subscriber, e);
+            return;
+        }
+        int routers = plan.tasks.size() + plan.skipped.size();
+        SubmissionPublisher<RefreshRoundResult.RouterResult> publisher =
+                new SubmissionPublisher<>(refreshExecutor.asExecutor(), Math.max(1, routers));
+        publisher.subscribe(subscriber);
+        QuorumEmitter emitter = new QuorumEmitter(publisher, quorum);
+        plan.skipped.forEach(emitter::emit);
+        if (plan.isEmpty()) {
+            publisher.close();
+            return;
+        }
+        try {
+            List<RefreshRoundResult.RouterResult> results = invokeRefresh(plan, emitter::emit).join();
+            RefreshRoundResult result = new RefreshRoundResult(targetVersion, System.nanoTime() - start, results);
+            metrics.record(result);
+            lastRoundResult = result;
+            publisher.close();
+        } catch (Throwable e) {
+            publisher.closeExceptionally(e);
+        }
+    }
+
+    // for a stream round that cannot start
+    private static void failStream(Flow.Subscriber<?> subscriber, Throwable e) {
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        subscriber.onError(e);
+    }
+
+    // forwards outcomes until the quorum of successes is reached
+    private static final class QuorumEmitter {
+        private final SubmissionPublisher<RefreshRoundResult.RouterResult> publisher;
+        private final int quorum;
+        // guarded by this
+        private int successes;
+
+        QuorumEmitter(SubmissionPublisher<RefreshRoundResult.RouterResult> publisher, int quorum) {
+            this.publisher = publisher;
+            this.quorum = quorum;
+        }
+
+        synchronized void emit(RefreshRoundResult.RouterResult result) {
+            if (publisher.isClosed()) {
+                return;
+            }
+            // the buffer holds every router, so nothing is dropped
+            publisher.offer(result, null);
+            if (result.getOutcome() == RefreshRoundResult.Outcome.SUCCESS && ++successes == quorum) {
+                publisher.close();
+            }
+        }
+    }
+
+    /*
+     * Only routers behind the target version are called, and only if their
+     * circuit breaker lets them. Routers with an open breaker are reported as
+     * skipped, they are neither a success nor a new failure.
+     */
+    private RefreshPlan planRefresh(long targetVersion) {
+        RefreshPlan plan = new RefreshPlan(targetVersion);
+        for (Others.RouterState routerState : routerStore.getCachedRecords()) {
             String adminAddress = routerState.getAdminAddress();
-            if (adminAddress == null || adminAddress.isEmpty()) {
+            if (adminAddress == null || adminAddress.isEmpty()
+                    || routerState.getAppliedVersion() >= targetVersion) {
                 continue;
             }
-            refreshTasks.add(getUpdateTask(adminAddress));
+            CircuitBreaker breaker = getCircuitBreaker(adminAddress);
+            if (!breaker.tryAcquire()) {
+                plan.skipped.add(new RefreshRoundResult.RouterResult(adminAddress,
+                        RefreshRoundResult.Outcome.SKIPPED, 0));
+                continue;
+            }
+            plan.breakers.add(breaker);
+            try {
+                plan.tasks.add(getUpdateTask(adminAddress));
+            } catch (Throwable e) {
+                // none of the planned calls is made, half-open breakers must not wait for them
+                plan.breakers.forEach(CircuitBreaker::release);
+                throw e;
+            }
+            plan.staleRouters.add(routerState);
         }
-        if (!refreshTasks.isEmpty()) {
-            invokeRefresh(refreshTasks);
+        return plan;
+    }
+
+    private static final class RefreshPlan {
+        final long targetVersion;
+        final List<Others.RouterState> staleRouters = new ArrayList<>();
+        final List<CircuitBreaker> breakers = new ArrayList<>();
+        final List<Others.UpdateTask> tasks = new ArrayList<>();
+        final List<RefreshRoundResult.RouterResult> skipped = new ArrayList<>();
+
+        RefreshPlan(long targetVersion) {
+            this.targetVersion = targetVersion;
+        }
+
+        boolean isEmpty() {
+            return tasks.isEmpty() && skipped.isEmpty();
         }
     }
 
+    public CircuitBreaker getCircuitBreaker(String adminAddress) {
+        return circuitBreakers.computeIfAbsent(adminAddress, k -> new CircuitBreaker(
+                breakerFailureThreshold, breakerBaseBackoffMillis, breakerMaxBackoffMillis));
+    }
+
     protected Others.UpdateTask getUpdateTask(String address) {
         if (isLocalAdmin(address)) {
             return getLocalRefresher(address);
         } else {
-            return new Others.UpdateTask(new Others.MountTableManager(address), address);
+            // the cached client keeps its connections warm between rounds
+            Others.MountTableManager manager = new Others.MountTableManager(address,
+                    () -> routerClientsCache.get(address));
+            return new Others.UpdateTask(manager, address);
         }
     }
 
     protected Others.UpdateTask getLocalRefresher(String adminAddress) {
-        return new Others.UpdateTask(new Others.MountTableManager("local"), adminAddress);
+        Others.MountTableManager manager = new Others.MountTableManager("local",
+                () -> routerClientsCache.get(adminAddress));
+        return new Others.UpdateTask(manager, adminAddress);
     }
 
     private void removeFromCache(String adminAddress) {
         routerClientsCache.invalidate(adminAddress);
     }
 
-    private void invokeRefresh(List<Others.UpdateTask> updateTasks) {
-        List<CompletableFuture<Void>> asyncUpdaterTasks = updateTasks.stream().map(
-                updateTask -> CompletableFuture.runAsync(updateTask::refresh)
-                        .completeOnTimeout(null, cacheUpdateTimeout, TimeUnit.MILLISECONDS)
-                        .exceptionally(this::handleExceptionally)).collect(Collectors.toList());
+    /*
+     * At most refreshConcurrency routers are refreshed at once, the next one
+     * starts when one is done. Every outcome is applied to the router's breaker
+     * and version and handed to the listener as it comes, the returned future
+     * completes with all of them, in plan order, skipped routers last.
+     */
+    private CompletableFuture<List<RefreshRoundResult.RouterResult>> invokeRefresh(
+            RefreshPlan plan, Consumer<RefreshRoundResult.RouterResult> listener) {
+        RefreshRun run = new RefreshRun(plan, listener);
+        run.start();
+        return run.done;
+    }
+
+    private final class RefreshRun {
+        final RefreshPlan plan;
+        final Consumer<RefreshRoundResult.RouterResult> listener;
+        final int count;
+        final AtomicReferenceArray<RefreshRoundResult.RouterResult> results;
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger remaining;
+        /*
+         * Launches asked for and not made yet. Whoever raises it from zero
+         * makes them in a loop, the others only add to it, so a refresh that
+         * is done at once, like a skipped one, does not recurse into the next.
+         */
+        final AtomicInteger launches = new AtomicInteger();
+        final CompletableFuture<List<RefreshRoundResult.RouterResult>> done = new CompletableFuture<>();
+
+        RefreshRun(RefreshPlan plan, Consumer<RefreshRoundResult.RouterResult> listener) {
+            this.plan = plan;
+            this.listener = listener;
+            this.count = plan.tasks.size();
+            this.results = new AtomicReferenceArray<>(count);
+            this.remaining = new AtomicInteger(count);
+        }
+
+        void start() {
+            if (count == 0) {
+                finish();
+                return;
+            }
+            launch(Math.max(1, Math.min(refreshConcurrency, count)));
+        }
+
+        private void launch(int asked) {
+            if (launches.getAndAdd(asked) != 0) {
+                return;
+            }
+            do {
+                int i = next.getAndIncrement();
+                if (i < count) {
+                    refresh(i);
+                }
+            } while (launches.decrementAndGet() != 0);
+        }
+
+        private void refresh(int i) {
+            Others.UpdateTask task = plan.tasks.get(i);
+            submitRefresh(task).whenComplete((outcome, ex) -> {
+                RefreshRoundResult.RouterResult result = ex == null ? outcome
+                        : new RefreshRoundResult.RouterResult(task.getAdminAddress(),
+                                RefreshRoundResult.Outcome.FAILURE, 0, ex);
+                try {
+                    results.set(i, result);
+                    onRefreshed(plan, i, result);
+                    listener.accept(result);
+                } catch (Throwable e) {
+                    done.completeExceptionally(e);
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        finish();
+                    } else {
+                        launch(1);
+                    }
+                }
+            });
+        }
+
+        private void finish() {
+            List<RefreshRoundResult.RouterResult> all = new ArrayList<>(count + plan.skipped.size());
+            for (int i = 0; i < count; i++) {
+                all.add(results.get(i));
+            }
+            all.addAll(plan.skipped);
+            logResult(all);
+            done.complete(all);
+        }
+    }
+
+    private void onRefreshed(RefreshPlan plan, int index, RefreshRoundResult.RouterResult result) {
+        switch (result.getOutcome()) {
+            case SUCCESS:
+                plan.breakers.get(index).onSuccess();
+                plan.staleRouters.get(index).markApplied(plan.targetVersion);
+                break;
+            case SKIPPED:
+                // not called, neither a success nor a new failure
+                plan.breakers.get(index).release();
+                break;
+            default:
+                // the pooled client is kept while the breaker still calls the router
+                if (plan.breakers.get(index).onFailure() || isConnectionError(result.getError())) {
+                    removeFromCache(result.getAdminAddress());
+                }
+        }
+    }
+
+    // the router could not be reached, its client's connections are no use
+    private static boolean isConnectionError(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Completes with the outcome once the router is refreshed, failed or
+     * timed out. The outcome is fixed when the timeout fires, a call that
+     * returns later does not count.
+     *
+     * A timed-out refresh is interrupted, not just abandoned. A router whose
+     * last refresh ignored the interrupt is skipped instead of getting one
+     * more call stacked on it.
+     */
+    private CompletableFuture<RefreshRoundResult.RouterResult> submitRefresh(Others.UpdateTask updateTask) {
+        String adminAddress = updateTask.getAdminAddress();
+        if (refreshExecutor.isStuck(adminAddress)) {
+            return CompletableFuture.completedFuture(
+                    new RefreshRoundResult.RouterResult(adminAddress, RefreshRoundResult.Outcome.SKIPPED, 0));
+        }
+        long start = System.nanoTime();
+        long timeoutNanos = latencyTracker.timeoutNanos(adminAddress,
+                TimeUnit.MILLISECONDS.toNanos(cacheUpdateTimeout), TimeUnit.MILLISECONDS.toNanos(minRefreshTimeout));
+        CompletableFuture<RefreshRoundResult.Outcome> outcome = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CompletableFuture<Void> primary = attempt(updateTask, timeoutNanos, outcome, running, error, false);
 
-        CompletableFuture.allOf(asyncUpdaterTasks.toArray(CompletableFuture[]::new)).join();
-        logResult(updateTasks);
+        long hedgeDelayNanos = hedgingEnabled ? latencyTracker.percentileNanos(adminAddress, 95) : -1;
+        if (hedgeDelayNanos >= 0 && hedgeDelayNanos < timeoutNanos) {
+            // on the refresh workers, the hedge must not run on the common pool either
+            Executor delayed = CompletableFuture.delayedExecutor(hedgeDelayNanos, TimeUnit.NANOSECONDS,
+                    refreshExecutor.asExecutor());
+            delayed.execute(() -> {
+                if (outcome.isDone()) {
+                    return;
+                }
+                hedges.increment();
+                CompletableFuture<Void> hedge = attempt(getUpdateTask(adminAddress),
+                        timeoutNanos - hedgeDelayNanos, outcome, running, error, true);
+                // whichever wins, the other call is cancelled
+                outcome.whenComplete((ignored, ex) -> {
+                    primary.cancel(true);
+                    hedge.cancel(true);
+                });
+            });
+        }
+        return outcome.thenApply(result -> new RefreshRoundResult.RouterResult(adminAddress, result,
+                System.nanoTime() - start, result == RefreshRoundResult.Outcome.SUCCESS ? null : error.get()));
+    }
+
+    // one call to the router; the outcome is a failure only when no call is left running
+    private CompletableFuture<Void> attempt(Others.UpdateTask updateTask, long timeoutNanos,
+                                            CompletableFuture<RefreshRoundResult.Outcome> outcome,
+                                            AtomicInteger running,
+                                            AtomicReference<Throwable> error,
+                                            boolean hedge) {
+        String adminAddress = updateTask.getAdminAddress();
+        running.incrementAndGet();
+        // measured from submission like the timeout, so queue wait counts in both
+        long submitted = System.nanoTime();
+        CompletableFuture<Void> call = refreshExecutor.submit(adminAddress, () -> {
+            try {
+                updateTask.refresh();
+            } finally {
+                latencyTracker.record(adminAddress, System.nanoTime() - submitted);
+            }
+        });
+        call.orTimeout(timeoutNanos, TimeUnit.NANOSECONDS).whenComplete((ignored, ex) -> {
+            if (ex instanceof CancellationException) {
+                // the other call won
+                return;
+            }
+            boolean timedOut = ex instanceof TimeoutException;
+            if (ex != null && !timedOut) {
+                // logged with the round
+                error.set(ex);
+            }
+            if (ex == null && updateTask.isSuccess()) {
+                // counted first, completing the outcome may already release the waiting round
+                if (hedge) {
+                    hedgesWon.increment();
+                }
+                if (!outcome.complete(RefreshRoundResult.Outcome.SUCCESS) && hedge) {
+                    hedgesWon.decrement();
+                }
+            } else if (running.decrementAndGet() == 0) {
+                outcome.complete(timedOut ? RefreshRoundResult.Outcome.TIMEOUT : RefreshRoundResult.Outcome.FAILURE);
+            }
+        });
+        return call;
     }
 
-    private Void handleExceptionally(Throwable ex) {
+    private void handleExceptionally(Throwable ex) {
         log(ex.toString());
-        return null;
     }
 
     private boolean isLocalAdmin(String adminAddress) {
         return adminAddress.contains("local");
     }
 
-    private void logResult(List<Others.UpdateTask> updateTasks) {
+    // once per round, the details are in the round result and the metrics
+    private void logResult(List<RefreshRoundResult.RouterResult> results) {
         int successCount = 0;
         int failureCount = 0;
-        for (Others.UpdateTask task : updateTasks) {
-            if (task.isSuccess()) {
-                successCount++;
-            } else {
-                failureCount++;
-                removeFromCache(task.getAdminAddress());
+        int skippedCount = 0;
+        for (RefreshRoundResult.RouterResult result : results) {
+            switch (result.getOutcome()) {
+                case SUCCESS:
+                    successCount++;
+                    break;
+                case SKIPPED:
+                    skippedCount++;
+                    break;
+                default:
+                    failureCount++;
+                    if (result.getError() != null) {
+                        handleExceptionally(result.getError());
+                    }
             }
         }
         if (failureCount != 0) {
             log("Not all router admins updated their cache");
         }
-        log(String.format(
+        String result = String.format(
                 "Mount table entries cache refresh successCount=%d,failureCount=%d",
                 successCount, failureCount
-        ));
+        );
+        log(skippedCount == 0 ? result : result + ",skippedCount=" + skippedCount);
     }
 
     public void log(String message) {
-        System.out.println(message);
+        LOG.info(message);
     }
 
     public void setCacheUpdateTimeout(long cacheUpdateTimeout) {
         this.cacheUpdateTimeout = cacheUpdateTimeout;
     }
 
+    /**
+     * Applies to clients created from now on.
+     */
+    public void setRouterConnector(Others.RouterClient.Connector routerConnector) {
+        this.routerConnector = routerConnector;
+    }
+
     public void setRouterClientsCache(Others.LoadingCache cache) {
         this.routerClientsCache = cache;
     }
 
+    /**
+     * Bounds the cached admin clients, has to be set before
+     * {@link #serviceInit()}. Keep it at or above the number of routers.
+     */
+    public void setMaxCachedClients(int maxCachedClients) {
+        this.maxCachedClients = maxCachedClients;
+    }
+
+    /**
+     * Applies to breakers created from now on.
+     */
+    public void setCircuitBreakerSettings(int failureThreshold, long baseBackoffMillis, long maxBackoffMillis) {
+        this.breakerFailureThreshold = failureThreshold;
+        this.breakerBaseBackoffMillis = baseBackoffMillis;
+        this.breakerMaxBackoffMillis = maxBackoffMillis;
+    }
+
+    public void setMinRefreshTimeout(long minRefreshTimeout) {
+        this.minRefreshTimeout = minRefreshTimeout;
+    }
+
+    public void setRefreshConcurrency(int refreshConcurrency) {
+        this.refreshConcurrency = refreshConcurrency;
+    }
+
+    public void setHedgingEnabled(boolean hedgingEnabled) {
+        this.hedgingEnabled = hedgingEnabled;
+    }
+
+    public RouterLatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+
+    public RefreshMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return result of the last finished round, null before the first one
+     */
+    public RefreshRoundResult getLastRoundResult() {
+        return lastRoundResult;
+    }
+
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    public long getHedgeWinCount() {
+        return hedgesWon.sum();
+    }
+
+    public void setRefreshDebounceMillis(long refreshDebounceMillis) {
+        this.refreshDebounceMillis = refreshDebounceMillis;
+    }
+
+    public void setRefreshExecutor(RefreshExecutor refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    public RefreshExecutor getRefreshExecutor() {
+        return refreshExecutor;
+    }
+
     public void setRouterStore(Others.RouterStore routerStore) {
         this.routerStore = routerStore;
     }
@@ -1,36 +1,409 @@
 package course.concurrency.exams.refactoring;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class Others {
 
+    /**
+     * Cache that creates missing values itself. Concurrent misses for one key
+     * wait for a single load. Entries expire a fixed time after they were
+     * loaded, and when the cache grows over its maximum size the least
+     * recently used entry goes first. Removed values that are AutoCloseable
+     * are closed on the given executor, never on the caller's thread.
+     *
+     * Expired entries are dropped on access and by {@link #cleanUp()}.
+     */
     public static class LoadingCache<K, V> {
-        Map<K,V> map = new ConcurrentHashMap<>();
+
+        private final ConcurrentHashMap<K, Entry<V>> map = new ConcurrentHashMap<>();
+        private final Function<? super K, ? extends V> loader;
+        private final long ttlNanos;
+        private final int maximumSize;
+        private final Executor closeExecutor;
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder loadFailures = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        public LoadingCache() {
+            this(key -> {
+                throw new IllegalStateException("No value for " + key);
+            }, 0, Integer.MAX_VALUE, Runnable::run);
+        }
+
+        /**
+         * @param ttlMillis time to live after loading, 0 for no expiry
+         */
+        public LoadingCache(Function<? super K, ? extends V> loader, long ttlMillis, int maximumSize,
+                            Executor closeExecutor) {
+            this.loader = loader;
+            this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+            this.maximumSize = maximumSize;
+            this.closeExecutor = closeExecutor;
+        }
+
+        /**
+         * Returns the cached value, loading it if absent or expired.
+         *
+         * @throws CompletionException if the load failed
+         */
+        public V get(K key) {
+            for (;;) {
+                long now = System.nanoTime();
+                Entry<V> entry = map.get(key);
+                if (entry != null) {
+                    if (!entry.isExpired(now)) {
+                        hits.increment();
+                        entry.lastAccess = now;
+                        return entry.value.join();
+                    }
+                    if (map.remove(key, entry)) {
+                        evictions.increment();
+                        closeAsync(entry);
+                    }
+                    continue;
+                }
+                Entry<V> loading = new Entry<>(new CompletableFuture<>(), now, ttlNanos);
+                if (map.putIfAbsent(key, loading) != null) {
+                    continue;
+                }
+                misses.increment();
+                try {
+                    loading.value.complete(loader.apply(key));
+                } catch (Throwable e) {
+                    loadFailures.increment();
+                    map.remove(key, loading);
+                    loading.value.completeExceptionally(e);
+                }
+                evictOverflow();
+                return loading.value.join();
+            }
+        }
 
         public void add(K key, V value) {
-            map.put(key, value);
+            add(key, value, TimeUnit.NANOSECONDS.toMillis(ttlNanos));
+        }
+
+        /**
+         * Puts a value with its own time to live, replacing and closing the old one.
+         */
+        public void add(K key, V value, long ttlMillis) {
+            Entry<V> old = map.put(key, new Entry<>(CompletableFuture.completedFuture(value),
+                    System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(ttlMillis)));
+            if (old != null) {
+                closeAsync(old);
+            }
+            evictOverflow();
+        }
+
+        public void invalidate(K key) {
+            Entry<V> old = map.remove(key);
+            if (old != null) {
+                closeAsync(old);
+            }
+        }
+
+        public void invalidateAll() {
+            for (K key : map.keySet()) {
+                invalidate(key);
+            }
+        }
+
+        /**
+         * Removes and closes expired entries.
+         */
+        public void cleanUp() {
+            long now = System.nanoTime();
+            map.forEach((key, entry) -> {
+                if (entry.isExpired(now) && map.remove(key, entry)) {
+                    evictions.increment();
+                    closeAsync(entry);
+                }
+            });
+            evictOverflow();
         }
 
-        public void invalidate(String address) {
-            map.remove(address);
+        public int size() {
+            return map.size();
         }
 
-        public void cleanUp() { map.clear(); }
+        public long getHitCount() {
+            return hits.sum();
+        }
 
+        public long getMissCount() {
+            return misses.sum();
+        }
+
+        public long getLoadFailureCount() {
+            return loadFailures.sum();
+        }
+
+        // expired or pushed out by the size bound, explicit invalidations are not counted
+        public long getEvictionCount() {
+            return evictions.sum();
+        }
+
+        // a scan per evicted entry is fine for a cache of router clients
+        private void evictOverflow() {
+            while (map.size() > maximumSize) {
+                K eldestKey = null;
+                Entry<V> eldest = null;
+                for (Map.Entry<K, Entry<V>> e : map.entrySet()) {
+                    Entry<V> entry = e.getValue();
+                    if (entry.value.isDone() && (eldest == null || entry.lastAccess - eldest.lastAccess < 0)) {
+                        eldestKey = e.getKey();
+                        eldest = entry;
+                    }
+                }
+                if (eldest == null) {
+                    return;
+                }
+                if (map.remove(eldestKey, eldest)) {
+                    evictions.increment();
+                    closeAsync(eldest);
+                }
+            }
+        }
+
+        private void closeAsync(Entry<V> entry) {
+            entry.value.thenAccept(value -> {
+                if (value instanceof AutoCloseable) {
+                    Runnable close = () -> {
+                        try {
+                            ((AutoCloseable) value).close();
+                        } catch (Exception ignored) {}
+                    };
+                    try {
+                        closeExecutor.execute(close);
+                    } catch (RejectedExecutionException e) {
+                        close.run();
+                    }
+                }
+            });
+        }
+
+        private static final class Entry<V> {
+            final CompletableFuture<V> value;
+            final long loadedAt;
+            final long ttlNanos;
+            volatile long lastAccess;
+
+            Entry(CompletableFuture<V> value, long now, long ttlNanos) {
+                this.value = value;
+                this.loadedAt = now;
+                this.ttlNanos = ttlNanos;
+                this.lastAccess = now;
+            }
+
+            boolean isExpired(long now) {
+                return ttlNanos > 0 && value.isDone() && now - loadedAt >= ttlNanos;
+            }
+        }
     }
 
-    public static class RouterClient {
+    /**
+     * Admin client of one router, reused by every refresh of that router.
+     * Calls are multiplexed: a connection carries up to
+     * {@code streamsPerConnection} calls at once, and a new connection is only
+     * opened when all pooled ones are busy, up to {@code maxConnections}.
+     * Callers beyond that wait for a free stream. A connection that fails is
+     * dropped from the pool, an interrupted call leaves it in. Closing takes
+     * no new calls and closes every connection once its calls have finished.
+     */
+    public static class RouterClient implements AutoCloseable {
+
+        public interface Connection extends AutoCloseable {
+            boolean refresh() throws IOException;
+
+            @Override
+            void close();
+        }
+
+        public interface Connector {
+            Connection connect(String adminAddress) throws IOException;
+        }
+
+        private static final int DEFAULT_MAX_CONNECTIONS = 2;
+        private static final int DEFAULT_STREAMS_PER_CONNECTION = 8;
+
+        private final String adminAddress;
+        private final Connector connector;
+        private final int maxConnections;
+        private final int streamsPerConnection;
+        // one permit per stream of a full pool
+        private final Semaphore streams;
+        private final CopyOnWriteArrayList<PooledConnection> pool = new CopyOnWriteArrayList<>();
+        private final Object connectLock = new Object();
+        private final LongAdder connects = new LongAdder();
+        private volatile boolean closed;
+
+        public RouterClient(String adminAddress, Connector connector) {
+            this(adminAddress, connector, DEFAULT_MAX_CONNECTIONS, DEFAULT_STREAMS_PER_CONNECTION);
+        }
+
+        public RouterClient(String adminAddress, Connector connector, int maxConnections, int streamsPerConnection) {
+            this.adminAddress = adminAddress;
+            this.connector = connector;
+            this.maxConnections = maxConnections;
+            this.streamsPerConnection = streamsPerConnection;
+            this.streams = new Semaphore(maxConnections * streamsPerConnection);
+        }
+
+        /**
+         * @throws UncheckedIOException if the router cannot be reached
+         * @throws IllegalStateException if the client is closed
+         */
+        public boolean refresh() {
+            try {
+                streams.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("Interrupted waiting for a connection"));
+            }
+            PooledConnection connection = null;
+            try {
+                connection = acquireStream();
+                return connection.connection.refresh();
+            } catch (InterruptedIOException e) {
+                throw new UncheckedIOException(e);
+            } catch (IOException e) {
+                if (connection != null) {
+                    discard(connection);
+                }
+                throw new UncheckedIOException(e);
+            } finally {
+                if (connection != null && connection.inFlight.decrementAndGet() == 0 && closed) {
+                    retireIfIdle(connection);
+                }
+                streams.release();
+            }
+        }
+
+        /*
+         * With a permit held there is a free stream or room for a connection:
+         * the permits never exceed the streams of a full pool.
+         */
+        private PooledConnection acquireStream() throws IOException {
+            while (true) {
+                if (closed) {
+                    throw new IllegalStateException("Client of " + adminAddress + " is closed");
+                }
+                for (PooledConnection connection : pool) {
+                    if (connection.tryAcquire(streamsPerConnection)) {
+                        return connection;
+                    }
+                }
+                synchronized (connectLock) {
+                    // another caller may have just connected
+                    for (PooledConnection connection : pool) {
+                        if (connection.tryAcquire(streamsPerConnection)) {
+                            return connection;
+                        }
+                    }
+                    if (pool.size() < maxConnections) {
+                        PooledConnection connection = new PooledConnection(connector.connect(adminAddress));
+                        connects.increment();
+                        connection.inFlight.incrementAndGet();
+                        pool.add(connection);
+                        // closed meanwhile: the call goes ahead and retires it when done
+                        return connection;
+                    }
+                }
+                // a stream is being released right now
+                Thread.onSpinWait();
+            }
+        }
+
+        private void discard(PooledConnection connection) {
+            if (pool.remove(connection)) {
+                connection.connection.close();
+            }
+        }
+
+        // the CAS makes sure no call can take the connection after it is closed
+        private void retireIfIdle(PooledConnection connection) {
+            if (connection.inFlight.compareAndSet(0, PooledConnection.RETIRED)) {
+                discard(connection);
+            }
+        }
+
+        public int getConnectionCount() {
+            return pool.size();
+        }
+
+        // connections opened over the client's life, including dropped ones
+        public long getConnectCount() {
+            return connects.sum();
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
 
+        /**
+         * Calls in flight finish on their connections, the last one to
+         * finish closes it.
+         */
+        @Override
+        public void close() {
+            closed = true;
+            pool.forEach(this::retireIfIdle);
+        }
+
+        private static final class PooledConnection {
+            static final int RETIRED = -1;
+
+            final Connection connection;
+            final AtomicInteger inFlight = new AtomicInteger();
+
+            PooledConnection(Connection connection) {
+                this.connection = connection;
+            }
+
+            boolean tryAcquire(int limit) {
+                int current;
+                do {
+                    current = inFlight.get();
+                    if (current >= limit || current == RETIRED) {
+                        return false;
+                    }
+                } while (!inFlight.compareAndSet(current, current + 1));
+                return true;
+            }
+        }
     }
 
     public static class RouterState {
         private static AtomicInteger counter = new AtomicInteger(0);
         private String adminAddress;
+        // mount table version this router has refreshed to, -1 before the first refresh
+        private final AtomicLong appliedVersion = new AtomicLong(-1);
 
         public RouterState(String address) {
             this.adminAddress = address + counter.incrementAndGet();
@@ -39,25 +412,236 @@ public class Others {
         public String getAdminAddress() {
             return adminAddress;
         }
+
+        public long getAppliedVersion() {
+            return appliedVersion.get();
+        }
+
+        // versions only move forward, a late refresh of an older version is ignored
+        public void markApplied(long version) {
+            appliedVersion.accumulateAndGet(version, Math::max);
+        }
     }
 
+    /**
+     * Registry of routers, partitioned by admin address hash. Every shard is
+     * an immutable array replaced with CAS on add and remove, so readers
+     * never block or see a half-done change, and writers to different shards
+     * never contend. A snapshot is a read-only view over the current shard
+     * arrays, taken without copying any router.
+     */
     public static class RouterStore {
-        List<RouterState> states = new ArrayList<>();
+        private static final int DEFAULT_SHARDS = 64;
+        private static final RouterState[] EMPTY = new RouterState[0];
+
+        private final AtomicReferenceArray<RouterState[]> shards;
+        private final AtomicLong mountTableVersion = new AtomicLong();
+
+        public RouterStore() {
+            this(DEFAULT_SHARDS);
+        }
 
+        /**
+         * @param shardCount rounded up to a power of two
+         */
+        public RouterStore(int shardCount) {
+            int count = shardCount <= 1 ? 1 : Integer.highestOneBit(shardCount - 1) << 1;
+            shards = new AtomicReferenceArray<>(count);
+            for (int i = 0; i < count; i++) {
+                shards.set(i, EMPTY);
+            }
+        }
+
+        /**
+         * @return immutable snapshot of all routers, unaffected by later changes
+         */
         public List<RouterState> getCachedRecords() {
-            return states;
+            RouterState[][] parts = new RouterState[shards.length()][];
+            for (int i = 0; i < parts.length; i++) {
+                parts[i] = shards.get(i);
+            }
+            return new Snapshot(parts);
+        }
+
+        /**
+         * @return immutable snapshot of the routers of one shard
+         */
+        public List<RouterState> getCachedRecords(int shard) {
+            return new Snapshot(new RouterState[][]{shards.get(shard)});
+        }
+
+        public int getShardCount() {
+            return shards.length();
+        }
+
+        public int shardOf(String adminAddress) {
+            int h = Objects.hashCode(adminAddress);
+            return (h ^ (h >>> 16)) & (shards.length() - 1);
+        }
+
+        /**
+         * @return false if a router with this admin address is already registered
+         */
+        public boolean add(RouterState state) {
+            int shard = shardOf(state.getAdminAddress());
+            while (true) {
+                RouterState[] current = shards.get(shard);
+                if (indexOf(current, state.getAdminAddress()) >= 0) {
+                    return false;
+                }
+                RouterState[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = state;
+                if (shards.compareAndSet(shard, current, updated)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * @return the removed router, null if there was none with this address
+         */
+        public RouterState remove(String adminAddress) {
+            int shard = shardOf(adminAddress);
+            while (true) {
+                RouterState[] current = shards.get(shard);
+                int index = indexOf(current, adminAddress);
+                if (index < 0) {
+                    return null;
+                }
+                RouterState[] updated = new RouterState[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, index);
+                System.arraycopy(current, index + 1, updated, index, updated.length - index);
+                if (shards.compareAndSet(shard, current, updated)) {
+                    return current[index];
+                }
+            }
+        }
+
+        public RouterState get(String adminAddress) {
+            RouterState[] shard = shards.get(shardOf(adminAddress));
+            int index = indexOf(shard, adminAddress);
+            return index < 0 ? null : shard[index];
+        }
+
+        public int size() {
+            int size = 0;
+            for (int i = 0; i < shards.length(); i++) {
+                size += shards.get(i).length;
+            }
+            return size;
+        }
+
+        private static int indexOf(RouterState[] states, String adminAddress) {
+            for (int i = 0; i < states.length; i++) {
+                if (Objects.equals(states[i].getAdminAddress(), adminAddress)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // shard arrays are never written once published, so sharing them is safe
+        private static final class Snapshot extends AbstractList<RouterState> implements RandomAccess {
+            private final RouterState[][] parts;
+            private final int[] offsets;
+
+            Snapshot(RouterState[][] parts) {
+                this.parts = parts;
+                this.offsets = new int[parts.length + 1];
+                for (int i = 0; i < parts.length; i++) {
+                    offsets[i + 1] = offsets[i] + parts[i].length;
+                }
+            }
+
+            @Override
+            public RouterState get(int index) {
+                Objects.checkIndex(index, size());
+                int part = Arrays.binarySearch(offsets, index);
+                // skip empty parts that start at the same offset
+                if (part >= 0) {
+                    while (parts[part].length == 0) {
+                        part++;
+                    }
+                } else {
+                    part = -part - 2;
+                }
+                return parts[part][index - offsets[part]];
+            }
+
+            @Override
+            public int size() {
+                return offsets[parts.length];
+            }
+
+            @Override
+            public Iterator<RouterState> iterator() {
+                return new Iterator<>() {
+                    private int part;
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        while (part < parts.length && index == parts[part].length) {
+                            part++;
+                            index = 0;
+                        }
+                        return part < parts.length;
+                    }
+
+                    @Override
+                    public RouterState next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return parts[part][index++];
+                    }
+                };
+            }
+        }
+
+        public long getMountTableVersion() {
+            return mountTableVersion.get();
+        }
+
+        /**
+         * Records a change of mount table entries.
+         *
+         * @return the new version routers have to refresh to
+         */
+        public long mountTableChanged() {
+            return mountTableVersion.incrementAndGet();
         }
     }
 
     public static class MountTableManager {
 
         private String address;
-        public MountTableManager(String address) {
+        // looked up on every call, a client replaced in the meantime is picked up
+        private final Supplier<RouterClient> client;
+
+        public MountTableManager(String address, Supplier<RouterClient> client) {
             this.address = address;
+            this.client = client;
         }
 
+        /**
+         * @throws IllegalStateException if there is no client for the router
+         */
         public boolean refresh() {
-            return ThreadLocalRandom.current().nextBoolean();
+            RouterClient routerClient = client.get();
+            if (routerClient == null) {
+                throw new IllegalStateException("No client for router " + address);
+            }
+            try {
+                return routerClient.refresh();
+            } catch (IllegalStateException e) {
+                // evicted between the lookup and the call, the cache has a new client by now
+                RouterClient replacement = client.get();
+                if (!routerClient.isClosed() || replacement == null || replacement == routerClient) {
+                    throw e;
+                }
+                return replacement.refresh();
+            }
         }
     }
 
@@ -65,7 +649,8 @@ public class Others {
 
         private final Others.MountTableManager manager;
         private final String adminAddress;
-        private boolean success;
+        // written by the refresh thread, read by the one completing its future
+        private volatile boolean success;
 
         public UpdateTask(Others.MountTableManager manager,
                           String adminAddress) {
@@ -0,0 +1,307 @@
+package course.concurrency.exams.refactoring;
+
+import course.concurrency.exams.VirtualThreads;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs blocking router refreshes away from the common pool.
+ *
+ * Overall parallelism is bounded by the size of the platform pool, or by a
+ * semaphore in virtual-thread mode. On top of that each router runs at most
+ * {@code perRouterLimit} refreshes at a time; the rest wait in the router's
+ * own queue without holding a worker thread.
+ */
+public class RefreshExecutor {
+
+    // job states
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int CANCELLED = 3;
+    private static final int INTERRUPTING = 4;
+    private static final int INTERRUPTED = 5;
+
+    private final ExecutorService executor;
+    private final Semaphore parallelism;
+    private final int perRouterLimit;
+    private final ConcurrentHashMap<String, RouterQueue> routers = new ConcurrentHashMap<>();
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder active = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder stuck = new LongAdder();
+
+    RefreshExecutor(ExecutorService executor, Semaphore parallelism, int perRouterLimit) {
+        if (perRouterLimit < 1) {
+            throw new IllegalArgumentException("Per-router limit must be positive: " + perRouterLimit);
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.perRouterLimit = perRouterLimit;
+    }
+
+    // platform threads, idle ones time out so an unused service keeps none
+    public static RefreshExecutor fixed(int maxParallelism, int perRouterLimit) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxParallelism, maxParallelism,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r);
+                t.setName("MountTableRefresh_worker-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return new RefreshExecutor(pool, null, perRouterLimit);
+    }
+
+    // one virtual thread per refresh, at most maxParallelism running; needs JDK 21+
+    public static RefreshExecutor virtualThreads(int maxParallelism, int perRouterLimit) {
+        return new RefreshExecutor(VirtualThreads.newPerTaskExecutor(), new Semaphore(maxParallelism), perRouterLimit);
+    }
+
+    /**
+     * Queues the refresh of a router. The future fails with a
+     * {@link CompletionException} like {@link CompletableFuture#runAsync} does.
+     *
+     * Completing or cancelling the future from outside, for example with
+     * {@link CompletableFuture#completeOnTimeout}, cancels the refresh: a
+     * queued one never starts, a running one is interrupted. A refresh that
+     * ignores the interrupt keeps its router {@link #isStuck stuck} until it
+     * returns.
+     */
+    public CompletableFuture<Void> submit(String adminAddress, Runnable refresh) {
+        RouterQueue router = routers.computeIfAbsent(adminAddress, k -> new RouterQueue());
+        Job job = new Job(router, refresh);
+        queued.increment();
+        router.jobs.add(job);
+        drain(router);
+        return job.result;
+    }
+
+    private void drain(RouterQueue router) {
+        for (;;) {
+            int running = router.running.get();
+            if (running >= perRouterLimit || router.jobs.isEmpty()) {
+                return;
+            }
+            if (!router.running.compareAndSet(running, running + 1)) {
+                continue;
+            }
+            Job job = router.jobs.poll();
+            if (job == null) {
+                // someone else took it, give the slot back and look again
+                router.running.decrementAndGet();
+                continue;
+            }
+            start(router, job);
+        }
+    }
+
+    private void start(RouterQueue router, Job job) {
+        try {
+            executor.execute(() -> run(router, job));
+        } catch (RejectedExecutionException e) {
+            queued.decrement();
+            rejected.increment();
+            router.running.decrementAndGet();
+            job.state.set(DONE);
+            job.result.completeExceptionally(new CompletionException(e));
+        }
+    }
+
+    private void run(RouterQueue router, Job job) {
+        try {
+            if (parallelism != null) {
+                parallelism.acquireUninterruptibly();
+            }
+            queued.decrement();
+            job.runner = Thread.currentThread();
+            if (!job.state.compareAndSet(QUEUED, RUNNING)) {
+                // timed out or cancelled while waiting, nothing to run
+                if (parallelism != null) {
+                    parallelism.release();
+                }
+                return;
+            }
+            queueWaitNanos.add(System.nanoTime() - job.submittedAt);
+            active.increment();
+            try {
+                job.refresh.run();
+                if (job.state.compareAndSet(RUNNING, DONE)) {
+                    job.result.complete(null);
+                }
+            } catch (Throwable e) {
+                if (job.state.compareAndSet(RUNNING, DONE)) {
+                    job.result.completeExceptionally(new CompletionException(e));
+                }
+            } finally {
+                if (job.state.get() != DONE) {
+                    // the result was completed from outside and we were interrupted, maybe too late
+                    while (job.state.get() == INTERRUPTING) {
+                        Thread.onSpinWait();
+                    }
+                    Thread.interrupted();
+                    router.stuck.decrementAndGet();
+                    stuck.decrement();
+                }
+                active.decrement();
+                completed.increment();
+                if (parallelism != null) {
+                    parallelism.release();
+                }
+            }
+        } finally {
+            router.running.decrementAndGet();
+            drain(router);
+        }
+    }
+
+    // the result was completed by someone else, typically a timeout
+    private void cancelJob(RouterQueue router, Job job) {
+        if (job.state.compareAndSet(QUEUED, CANCELLED)) {
+            cancelled.increment();
+        } else if (job.state.compareAndSet(RUNNING, INTERRUPTING)) {
+            cancelled.increment();
+            router.stuck.incrementAndGet();
+            stuck.increment();
+            job.runner.interrupt();
+            job.state.set(INTERRUPTED);
+        }
+    }
+
+    /**
+     * Runs short tasks, like handing results to their consumers, on the
+     * refresh workers. They bypass the per-router queues and the semaphore.
+     */
+    public Executor asExecutor() {
+        return executor::execute;
+    }
+
+    // refreshes waiting for a worker or for their router's limit
+    public long getQueuedCount() {
+        return queued.sum();
+    }
+
+    public int getQueuedCount(String adminAddress) {
+        RouterQueue router = routers.get(adminAddress);
+        return router == null ? 0 : router.jobs.size();
+    }
+
+    public long getActiveCount() {
+        return active.sum();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    // refreshes whose future was completed before they finished
+    public long getCancelledCount() {
+        return cancelled.sum();
+    }
+
+    // cancelled refreshes that are still running
+    public long getStuckCount() {
+        return stuck.sum();
+    }
+
+    public boolean isStuck(String adminAddress) {
+        RouterQueue router = routers.get(adminAddress);
+        return router != null && router.stuck.get() > 0;
+    }
+
+    public double getAverageQueueWaitMillis() {
+        long count = completed.sum() + active.sum();
+        return count == 0 ? 0 : queueWaitNanos.sum() / 1e6 / count;
+    }
+
+    /**
+     * Stops taking refreshes and waits a little for the running ones.
+     */
+    public void shutdown(long timeoutMillis) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        for (RouterQueue router : routers.values()) {
+            for (Job job; (job = router.jobs.poll()) != null; ) {
+                queued.decrement();
+                rejected.increment();
+                job.state.set(DONE);
+                job.result.completeExceptionally(new CompletionException(new RejectedExecutionException("Shut down")));
+            }
+        }
+    }
+
+    private static final class RouterQueue {
+        final Queue<Job> jobs = new ConcurrentLinkedQueue<>();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger stuck = new AtomicInteger();
+    }
+
+    private final class Job {
+        final Runnable refresh;
+        final CompletableFuture<Void> result;
+        final long submittedAt = System.nanoTime();
+        final AtomicInteger state = new AtomicInteger(QUEUED);
+        volatile Thread runner;
+
+        Job(RouterQueue router, Runnable refresh) {
+            this.refresh = refresh;
+            this.result = new RefreshFuture(router, this);
+        }
+    }
+
+    /*
+     * Cancels the refresh before completing, so whoever waits on the future
+     * already sees the router as stuck. A callback registered on the future
+     * could run after the caller's own dependents.
+     */
+    private final class RefreshFuture extends CompletableFuture<Void> {
+        private final RouterQueue router;
+        private final Job job;
+
+        RefreshFuture(RouterQueue router, Job job) {
+            this.router = router;
+            this.job = job;
+        }
+
+        @Override
+        public boolean complete(Void value) {
+            cancelJob(router, job);
+            return super.complete(value);
+        }
+
+        @Override
+        public boolean completeExceptionally(Throwable ex) {
+            cancelJob(router, job);
+            return super.completeExceptionally(ex);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            cancelJob(router, job);
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package course.concurrency.exams.refactoring;
+
+import course.concurrency.exams.LogHistogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of refresh rounds. Neither recording nor
+ * reading takes a lock, so a metrics endpoint can scrape {@link #snapshot()}
+ * at any time. Every recording thread writes its own histograms, they are
+ * merged when read.
+ */
+public class RefreshMetrics {
+
+    private final LongAdder rounds = new LongAdder();
+    private final LongAdder[] outcomes = new LongAdder[RefreshRoundResult.Outcome.values().length];
+    private final PerThreadHistogram routerLatencyNanos = new PerThreadHistogram();
+    private final PerThreadHistogram roundWallTimeNanos = new PerThreadHistogram();
+
+    public RefreshMetrics() {
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+    }
+
+    public void record(RefreshRoundResult result) {
+        rounds.increment();
+        roundWallTimeNanos.local().record(result.getWallTimeNanos());
+        LogHistogram routerLatency = routerLatencyNanos.local();
+        for (RefreshRoundResult.RouterResult router : result.getRouters()) {
+            outcomes[router.getOutcome().ordinal()].increment();
+            // skipped routers were not called
+            if (router.getOutcome() != RefreshRoundResult.Outcome.SKIPPED) {
+                routerLatency.record(router.getLatencyNanos());
+            }
+        }
+    }
+
+    public long getRoundCount() {
+        return rounds.sum();
+    }
+
+    public long getCount(RefreshRoundResult.Outcome outcome) {
+        return outcomes[outcome.ordinal()].sum();
+    }
+
+    // merged copy, later rounds do not change it
+    public LogHistogram getRouterLatencyNanos() {
+        return routerLatencyNanos.merge();
+    }
+
+    // merged copy, later rounds do not change it
+    public LogHistogram getRoundWallTimeNanos() {
+        return roundWallTimeNanos.merge();
+    }
+
+    /**
+     * Flat name to value view, latencies in microseconds.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        values.put("refresh.rounds", getRoundCount());
+        for (RefreshRoundResult.Outcome outcome : RefreshRoundResult.Outcome.values()) {
+            values.put("refresh.routers." + outcome.name().toLowerCase(), getCount(outcome));
+        }
+        putLatencies(values, "refresh.router_latency_us", getRouterLatencyNanos());
+        putLatencies(values, "refresh.round_wall_time_us", getRoundWallTimeNanos());
+        return values;
+    }
+
+    private static void putLatencies(Map<String, Long> values, String name, LogHistogram histogram) {
+        values.put(name + ".p50", histogram.getValueAtPercentile(50) / 1000);
+        values.put(name + ".p99", histogram.getValueAtPercentile(99) / 1000);
+        values.put(name + ".p999", histogram.getValueAtPercentile(99.9) / 1000);
+        values.put(name + ".max", histogram.getMax() / 1000);
+    }
+
+    // one single-writer histogram per recording thread
+    private static final class PerThreadHistogram {
+        final Queue<LogHistogram> histograms = new ConcurrentLinkedQueue<>();
+        final ThreadLocal<LogHistogram> local = ThreadLocal.withInitial(() -> {
+            LogHistogram histogram = new LogHistogram();
+            histograms.add(histogram);
+            return histogram;
+        });
+
+        LogHistogram local() {
+            return local.get();
+        }
+
+        LogHistogram merge() {
+            LogHistogram merged = new LogHistogram();
+            for (LogHistogram histogram : histograms) {
+                merged.add(histogram);
+            }
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package course.concurrency.exams.refactoring;
+
+import java.util.List;
+
+/**
+ * What one refresh round did: the outcome and latency of every router it
+ * looked at, and how long the whole round took.
+ */
+public class RefreshRoundResult {
+
+    public enum Outcome { SUCCESS, FAILURE, TIMEOUT, SKIPPED }
+
+    public static class RouterResult {
+        private final String adminAddress;
+        private final Outcome outcome;
+        private final long latencyNanos;
+        private final Throwable error;
+
+        public RouterResult(String adminAddress, Outcome outcome, long latencyNanos) {
+            this(adminAddress, outcome, latencyNanos, null);
+        }
+
+        public RouterResult(String adminAddress, Outcome outcome, long latencyNanos, Throwable error) {
+            this.adminAddress = adminAddress;
+            this.outcome = outcome;
+            this.latencyNanos = latencyNanos;
+            this.error = error;
+        }
+
+        public String getAdminAddress() {
+            return adminAddress;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        // from submitting the refresh to its outcome, 0 if skipped
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        // what the last failed call threw, null if none threw
+        public Throwable getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return adminAddress + "=" + outcome + "(" + latencyNanos / 1000 + "us)";
+        }
+    }
+
+    private final long targetVersion;
+    private final long wallTimeNanos;
+    private final List<RouterResult> routers;
+
+    public RefreshRoundResult(long targetVersion, long wallTimeNanos, List<RouterResult> routers) {
+        this.targetVersion = targetVersion;
+        this.wallTimeNanos = wallTimeNanos;
+        this.routers = List.copyOf(routers);
+    }
+
+    public long getTargetVersion() {
+        return targetVersion;
+    }
+
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    public List<RouterResult> getRouters() {
+        return routers;
+    }
+
+    public int count(Outcome outcome) {
+        int count = 0;
+        for (RouterResult router : routers) {
+            if (router.outcome == outcome) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "RefreshRoundResult [version=" + targetVersion + ", wallTime=" + wallTimeNanos / 1000
+                + "us, routers=" + routers + "]";
+    }
+}
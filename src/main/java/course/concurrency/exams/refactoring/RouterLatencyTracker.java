@@ -0,0 +1,84 @@
+package course.concurrency.exams.refactoring;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Refresh latency per router admin address.
+ *
+ * The timeout follows the retransmission timeout of TCP (RFC 6298): a
+ * smoothed mean plus four smoothed deviations. It is never below twice the
+ * p95 of the recent samples, so a router with a steady but bimodal latency
+ * is not cut off at its slow mode. Until a router has enough samples the
+ * default timeout applies.
+ */
+public class RouterLatencyTracker {
+
+    private static final double ALPHA = 0.125;
+    private static final double BETA = 0.25;
+    private static final int WINDOW = 64;
+    static final int MIN_SAMPLES = 8;
+
+    private final ConcurrentHashMap<String, Stats> routers = new ConcurrentHashMap<>();
+
+    public void record(String adminAddress, long nanos) {
+        routers.computeIfAbsent(adminAddress, k -> new Stats()).record(nanos);
+    }
+
+    /**
+     * @return timeout in nanoseconds between the bounds, the default one if
+     * the router has too few samples
+     */
+    public long timeoutNanos(String adminAddress, long defaultNanos, long minNanos) {
+        Stats stats = routers.get(adminAddress);
+        if (stats == null) {
+            return defaultNanos;
+        }
+        long timeout = stats.timeoutNanos();
+        return timeout < 0 ? defaultNanos : Math.max(minNanos, Math.min(defaultNanos, timeout));
+    }
+
+    /**
+     * @param percentile from 0 to 100
+     * @return latency in nanoseconds over the recent samples, -1 if the router has too few
+     */
+    public long percentileNanos(String adminAddress, double percentile) {
+        Stats stats = routers.get(adminAddress);
+        return stats == null ? -1 : stats.percentile(percentile);
+    }
+
+    private static final class Stats {
+        private final long[] window = new long[WINDOW];
+        private long count;
+        private double smoothed;
+        private double deviation;
+
+        synchronized void record(long nanos) {
+            if (count == 0) {
+                smoothed = nanos;
+                deviation = nanos / 2.0;
+            } else {
+                deviation = (1 - BETA) * deviation + BETA * Math.abs(smoothed - nanos);
+                smoothed = (1 - ALPHA) * smoothed + ALPHA * nanos;
+            }
+            window[(int) (count++ % WINDOW)] = nanos;
+        }
+
+        synchronized long timeoutNanos() {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            return Math.max((long) (smoothed + 4 * deviation), 2 * percentile(95));
+        }
+
+        synchronized long percentile(double percentile) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(window, (int) Math.min(count, WINDOW));
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(sorted.length * percentile / 100.0) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+        }
+    }
+}
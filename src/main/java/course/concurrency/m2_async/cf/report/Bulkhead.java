@@ -0,0 +1,89 @@
+package course.concurrency.m2_async.cf.report;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded executor of one data source. At most {@code maxConcurrency} calls
+ * run and {@code maxQueued} wait, anything beyond is rejected at once, so a
+ * slow source can neither take threads from the others nor make callers
+ * block. A call whose future is cancelled or times out is taken off the
+ * queue, or interrupted if it already runs.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejected = new LongAdder();
+
+    public Bulkhead(String name, int maxConcurrency, int maxQueued) {
+        this.name = name;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxQueued)), r -> {
+            Thread t = new Thread(r);
+            t.setName("Bulkhead_" + name + "_" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return future of the call, failed with RejectedExecutionException
+     * if the bulkhead is full
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> source) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            try {
+                result.complete(source.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }, null);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            result.completeExceptionally(e);
+            return result;
+        }
+        result.whenComplete((value, ex) -> {
+            // abandoned by the caller, the slot goes to the next call
+            if ((ex instanceof CancellationException || ex instanceof TimeoutException) && task.cancel(true)) {
+                executor.remove(task);
+            }
+        });
+        return result;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -1,8 +1,48 @@
 package course.concurrency.m2_async.cf.report;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
 public class Others {
 
     static class Item {}
     static class Customer {}
-    public static class Report {}
+
+    /**
+     * A report is partial when a source was overloaded, failed or too slow;
+     * the data of that source is then empty and its name is in
+     * {@link #getMissingSources()}.
+     */
+    public static class Report {
+        private final Collection<Item> items;
+        private final Collection<Customer> customers;
+        private final Set<String> missingSources;
+
+        public Report() {
+            this(List.of(), List.of(), Set.of());
+        }
+
+        Report(Collection<Item> items, Collection<Customer> customers, Set<String> missingSources) {
+            this.items = items;
+            this.customers = customers;
+            this.missingSources = missingSources;
+        }
+
+        Collection<Item> getItems() {
+            return items;
+        }
+
+        Collection<Customer> getCustomers() {
+            return customers;
+        }
+
+        public Set<String> getMissingSources() {
+            return missingSources;
+        }
+
+        public boolean isPartial() {
+            return !missingSources.isEmpty();
+        }
+    }
 }
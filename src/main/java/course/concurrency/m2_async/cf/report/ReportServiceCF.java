@@ -3,33 +3,93 @@ package course.concurrency.m2_async.cf.report;
 import course.concurrency.m2_async.cf.LoadGenerator;
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+/**
+ * Every data source runs in its own bulkhead. A source that is full, fails
+ * or does not answer within {@code sourceTimeoutMillis} is left out and the
+ * report is partial, the other source is not held up by it.
+ */
 public class ReportServiceCF {
 
-    private ExecutorService executor = ForkJoinPool.commonPool();
+    static final String ITEMS = "items";
+    static final String CUSTOMERS = "customers";
+
+    private static final int DEFAULT_QUEUE_PER_SOURCE = 256;
+    private static final long DEFAULT_SOURCE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final Bulkhead itemsBulkhead;
+    private final Bulkhead customersBulkhead;
+    private final long sourceTimeoutMillis;
+    private final Supplier<Collection<Others.Item>> itemsSource;
+    private final Supplier<Collection<Others.Customer>> customersSource;
 
     private LoadGenerator loadGenerator = new LoadGenerator();
 
+    public ReportServiceCF() {
+        this(new Bulkhead(ITEMS, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_PER_SOURCE),
+                new Bulkhead(CUSTOMERS, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_PER_SOURCE),
+                DEFAULT_SOURCE_TIMEOUT_MILLIS);
+    }
+
+    public ReportServiceCF(Bulkhead itemsBulkhead, Bulkhead customersBulkhead, long sourceTimeoutMillis) {
+        this.itemsBulkhead = itemsBulkhead;
+        this.customersBulkhead = customersBulkhead;
+        this.sourceTimeoutMillis = sourceTimeoutMillis;
+        this.itemsSource = this::getItems;
+        this.customersSource = this::getActiveCustomers;
+    }
+
+    // sources replaced for tests
+    ReportServiceCF(Bulkhead itemsBulkhead, Bulkhead customersBulkhead, long sourceTimeoutMillis,
+                    Supplier<Collection<Others.Item>> itemsSource,
+                    Supplier<Collection<Others.Customer>> customersSource) {
+        this.itemsBulkhead = itemsBulkhead;
+        this.customersBulkhead = customersBulkhead;
+        this.sourceTimeoutMillis = sourceTimeoutMillis;
+        this.itemsSource = itemsSource;
+        this.customersSource = customersSource;
+    }
+
     public Others.Report getReport() {
+        Set<String> missing = new HashSet<>();
+
         CompletableFuture<Collection<Others.Item>> itemsCF =
-                CompletableFuture.supplyAsync(() -> getItems(), executor);
+                fromSource(itemsBulkhead, itemsSource, missing);
 
         CompletableFuture<Collection<Others.Customer>> customersCF =
-                CompletableFuture.supplyAsync(() -> getActiveCustomers(), executor);
+                fromSource(customersBulkhead, customersSource, missing);
 
         CompletableFuture<Others.Report> reportTask =
                 customersCF.thenCombine(itemsCF,
-                        (customers, orders) -> combineResults(orders, customers));
+                        (customers, orders) -> combineResults(orders, customers, missing));
 
         return reportTask.join();
     }
 
-    private Others.Report combineResults(Collection<Others.Item> items, Collection<Others.Customer> customers) {
-        return new Others.Report();
+    // a source that gives no data adds its name to missing and yields an empty collection
+    private <T> CompletableFuture<Collection<T>> fromSource(Bulkhead bulkhead, Supplier<Collection<T>> source,
+                                                            Set<String> missing) {
+        return bulkhead.supply(source)
+                .orTimeout(sourceTimeoutMillis, TimeUnit.MILLISECONDS)
+                .exceptionally(ex -> {
+                    synchronized (missing) {
+                        missing.add(bulkhead.getName());
+                    }
+                    return List.of();
+                });
+    }
+
+    private Others.Report combineResults(Collection<Others.Item> items, Collection<Others.Customer> customers,
+                                         Set<String> missing) {
+        synchronized (missing) {
+            return new Others.Report(items, customers, Set.copyOf(missing));
+        }
     }
 
     private Collection<Others.Customer> getActiveCustomers() {
@@ -43,7 +103,16 @@ public class ReportServiceCF {
         return List.of(new Others.Item(), new Others.Item());
     }
 
+    public Bulkhead getItemsBulkhead() {
+        return itemsBulkhead;
+    }
+
+    public Bulkhead getCustomersBulkhead() {
+        return customersBulkhead;
+    }
+
     public void shutdown() {
-        executor.shutdown();
+        itemsBulkhead.shutdown();
+        customersBulkhead.shutdown();
     }
 }
@@ -3,35 +3,75 @@ package course.concurrency.m2_async.cf.report;
 import course.concurrency.m2_async.cf.LoadGenerator;
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Same bulkheads as {@link ReportServiceCF}, waited on with plain futures.
+ * The wait for both sources together is bounded by {@code sourceTimeoutMillis}.
+ */
 public class ReportServiceExecutors {
 
-    private ExecutorService executor = Executors.newCachedThreadPool();
+    private static final int DEFAULT_QUEUE_PER_SOURCE = 256;
+    private static final long DEFAULT_SOURCE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final Bulkhead itemsBulkhead;
+    private final Bulkhead customersBulkhead;
+    private final long sourceTimeoutMillis;
 
     private LoadGenerator loadGenerator = new LoadGenerator();
 
+    public ReportServiceExecutors() {
+        this(new Bulkhead(ReportServiceCF.ITEMS, Runtime.getRuntime().availableProcessors(),
+                        DEFAULT_QUEUE_PER_SOURCE),
+                new Bulkhead(ReportServiceCF.CUSTOMERS, Runtime.getRuntime().availableProcessors(),
+                        DEFAULT_QUEUE_PER_SOURCE),
+                DEFAULT_SOURCE_TIMEOUT_MILLIS);
+    }
+
+    public ReportServiceExecutors(Bulkhead itemsBulkhead, Bulkhead customersBulkhead, long sourceTimeoutMillis) {
+        this.itemsBulkhead = itemsBulkhead;
+        this.customersBulkhead = customersBulkhead;
+        this.sourceTimeoutMillis = sourceTimeoutMillis;
+    }
+
     public Others.Report getReport() {
         Future<Collection<Others.Item>> iFuture =
-                executor.submit(() -> getItems());
+                itemsBulkhead.supply(() -> getItems());
         Future<Collection<Others.Customer>> customersFuture =
-                executor.submit(() -> getActiveCustomers());
+                customersBulkhead.supply(() -> getActiveCustomers());
 
-        try {
-            Collection<Others.Customer> customers = customersFuture.get();
-            Collection<Others.Item> items = iFuture.get();
-            return combineResults(items, customers);
-        } catch (ExecutionException | InterruptedException ex) {}
+        Set<String> missing = new HashSet<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sourceTimeoutMillis);
+        Collection<Others.Customer> customers = await(customersFuture, deadline, customersBulkhead, missing);
+        Collection<Others.Item> items = await(iFuture, deadline, itemsBulkhead, missing);
+        return combineResults(items, customers, missing);
+    }
 
-        return new Others.Report();
+    private <T> Collection<T> await(Future<Collection<T>> future, long deadline, Bulkhead bulkhead,
+                                    Set<String> missing) {
+        try {
+            return future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+        } catch (TimeoutException ex) {
+            future.cancel(true);
+        } catch (ExecutionException ex) {
+            // failed or rejected
+        }
+        missing.add(bulkhead.getName());
+        return List.of();
     }
 
-    private Others.Report combineResults(Collection<Others.Item> items, Collection<Others.Customer> customers) {
-        return new Others.Report();
+    private Others.Report combineResults(Collection<Others.Item> items, Collection<Others.Customer> customers,
+                                         Set<String> missing) {
+        return new Others.Report(items, customers, Set.copyOf(missing));
     }
 
     private Collection<Others.Customer> getActiveCustomers() {
@@ -46,6 +86,7 @@ public class ReportServiceExecutors {
     }
 
     public void shutdown() {
-        executor.shutdown();
+        itemsBulkhead.shutdown();
+        customersBulkhead.shutdown();
     }
 }
@@ -0,0 +1,48 @@
+package course.concurrency.exams;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogHistogramTests {
+
+    @Test
+    public void testBucketsCoverValues() {
+        for (long value : new long[]{0, 1, 31, 32, 33, 63, 64, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int index = LogHistogram.indexOf(value);
+            assertTrue(LogHistogram.lowestValueOf(index) <= value, "value " + value);
+            assertTrue(LogHistogram.highestValueOf(index) >= value, "value " + value);
+            if (index > 0) {
+                assertTrue(LogHistogram.highestValueOf(index - 1) < value, "value " + value);
+            }
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMax());
+        long p50 = histogram.getValueAtPercentile(50);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 * 1.03125, "p50 " + p50);
+        assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+        assertEquals(0, new LogHistogram().getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testAdd() {
+        LogHistogram first = new LogHistogram();
+        LogHistogram second = new LogHistogram();
+        for (int i = 0; i < 100; i++) {
+            first.record(i);
+            second.record(i + 1000);
+        }
+        LogHistogram merged = new LogHistogram().add(first).add(second);
+        assertEquals(200, merged.getCount());
+        assertEquals(1099, merged.getMax());
+        assertEquals(99, merged.getValueAtPercentile(50));
+    }
+}
@@ -0,0 +1,255 @@
+package course.concurrency.exams.auction;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every Auction and AuctionStoppable implementation under the same load. The
+ * ranked and journaled decorators wrap the optimistic auction, the journal is
+ * written to a fresh temporary directory every iteration.
+ * Throughput and sampled latency percentiles for each thread count are
+ * written to target/jmh/auction-&lt;threads&gt;-threads.json.
+ *
+ * Price patterns:
+ *   ascending     - every bid beats the previous one, all bids win
+ *   random        - bids scattered around the current price, most lose to the
+ *                   running maximum near the top of the spread
+ *   mostly-losing - one bid in a hundred wins, the rest are far below
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AuctionBenchmarks {
+
+    // Change THREADS to experiment
+    public static final int[] THREADS = {1, 2, 4, 8};
+
+    // spread of the random pattern around the current price, in nanoseconds of nanoTime
+    private static final long RANDOM_SPREAD = 1_000_000;
+    private static final int WINNING_ONE_IN = 100;
+    private static final int RANKED_K = 10;
+    private static final String JOURNAL_FILE = "bids.journal";
+
+    @Param({"pessimistic", "optimistic", "adaptive", "flat-combining", "ranked", "journaled",
+            "stoppable-pessimistic", "stoppable-optimistic", "stoppable-lock-free"})
+    public String implementation;
+
+    @Param({"ascending", "random", "mostly-losing"})
+    public String prices;
+
+    // on: messages go through Notifier to a delivery pool that sends instantly
+    @Param({"off", "on"})
+    public String notification;
+
+    private Notifier notifier;
+    private ExecutorService deliveryPool;
+    private Auction auction;
+    private int pattern;
+    private Path journalDir;
+    private BidJournal journal;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        if (notification.equals("on")) {
+            deliveryPool = Executors.newFixedThreadPool(2);
+            notifier = new Notifier(new BlockingDelivery(deliveryPool, 0));
+        } else {
+            notifier = new Notifier() {
+                @Override
+                public void sendOutdatedMessage(Bid bid) {}
+            };
+        }
+        switch (implementation) {
+            case "pessimistic":
+                auction = new AuctionPessimistic(notifier);
+                break;
+            case "optimistic":
+                auction = new AuctionOptimistic(notifier);
+                break;
+            case "adaptive":
+                auction = new AuctionAdaptive(notifier);
+                break;
+            case "flat-combining":
+                auction = new AuctionFlatCombining(notifier);
+                break;
+            case "ranked":
+                auction = new RankedAuction(new AuctionOptimistic(notifier), RANKED_K);
+                break;
+            case "journaled":
+                journal = new BidJournal(newJournalFile());
+                auction = new JournaledAuction(new AuctionOptimistic(notifier), journal, 1);
+                break;
+            case "stoppable-pessimistic":
+                auction = new AuctionStoppablePessimistic(notifier);
+                break;
+            case "stoppable-optimistic":
+                auction = new AuctionStoppableOptimistic(notifier);
+                break;
+            case "stoppable-lock-free":
+                auction = new AuctionStoppableLockFree(notifier);
+                break;
+            default:
+                throw new IllegalArgumentException(implementation);
+        }
+        switch (prices) {
+            case "ascending":
+                pattern = 0;
+                break;
+            case "random":
+                pattern = 1;
+                break;
+            case "mostly-losing":
+                pattern = 2;
+                break;
+            default:
+                throw new IllegalArgumentException(prices);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        notifier.shutdown();
+        if (deliveryPool != null) {
+            // drop the backlog, only the cost of handing messages over is measured
+            deliveryPool.shutdownNow();
+            deliveryPool = null;
+        }
+        if (journal != null) {
+            journal.close();
+            journal = null;
+            deleteJournalDir();
+        }
+    }
+
+    private Path newJournalFile() {
+        try {
+            journalDir = Files.createTempDirectory("auction-bench");
+            return journalDir.resolve(JOURNAL_FILE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void deleteJournalDir() {
+        try {
+            Files.deleteIfExists(journalDir.resolve(JOURNAL_FILE));
+            Files.delete(journalDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Proposals racing with stops: three threads propose ascending bids while
+     * a fourth lets each auction run for STOP_AFTER_TOKENS of work, stops it
+     * mid-stream and replaces it with a fresh one. Measures proposals that
+     * land on the stop path as well as the cost of stopping under load; the
+     * stop time includes the fixed wait before it.
+     */
+    @State(Scope.Group)
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public static class Stop {
+
+        private static final long STOP_AFTER_TOKENS = 10_000;
+
+        @Param({"stoppable-pessimistic", "stoppable-optimistic", "stoppable-lock-free"})
+        public String implementation;
+
+        private final Notifier notifier = new Notifier() {
+            @Override
+            public void sendOutdatedMessage(Bid bid) {}
+        };
+        private volatile AuctionStoppable auction;
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            auction = newAuction();
+        }
+
+        @Benchmark
+        @Group("stop")
+        @GroupThreads(3)
+        public boolean propose() {
+            long price = System.nanoTime();
+            return auction.propose(price, price, price);
+        }
+
+        @Benchmark
+        @Group("stop")
+        @GroupThreads(1)
+        public Bid stopMidRun() {
+            Blackhole.consumeCPU(STOP_AFTER_TOKENS);
+            AuctionStoppable stopped = auction;
+            auction = newAuction();
+            return stopped.stopAuction();
+        }
+
+        private AuctionStoppable newAuction() {
+            switch (implementation) {
+                case "stoppable-pessimistic":
+                    return new AuctionStoppablePessimistic(notifier);
+                case "stoppable-optimistic":
+                    return new AuctionStoppableOptimistic(notifier);
+                case "stoppable-lock-free":
+                    return new AuctionStoppableLockFree(notifier);
+                default:
+                    throw new IllegalArgumentException(implementation);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new File("target/jmh").mkdirs();
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                    .include(AuctionBenchmarks.class.getName())
+                    .forks(1)
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("target/jmh/auction-" + threads + "-threads.json")
+                    .build();
+
+            new Runner(options).run();
+        }
+    }
+
+    // nanoTime keeps prices rising across threads without a shared counter
+    private long nextPrice() {
+        long now = System.nanoTime();
+        switch (pattern) {
+            case 0:
+                return now;
+            case 1:
+                return now + ThreadLocalRandom.current().nextLong(-RANDOM_SPREAD, RANDOM_SPREAD);
+            default:
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                return random.nextInt(WINNING_ONE_IN) == 0 ? now : random.nextLong(now >>> 1);
+        }
+    }
+
+    @Benchmark
+    public boolean propose() {
+        long price = nextPrice();
+        return auction.propose(price, price, price);
+    }
+}
@@ -0,0 +1,248 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuctionCloserTests {
+
+    private static final long START = 1_000_000;
+    private static final long TICK = 10;
+
+    private Notifier notifier;
+    private AuctionEngine engine;
+    private AtomicLong now;
+    private Map<Long, Bid> closed;
+    private AuctionCloser closer;
+
+    @BeforeEach
+    public void setup() {
+        notifier = new Notifier();
+        engine = new AuctionEngine(notifier, 4, 0);
+        now = new AtomicLong(START);
+        engine.setClock(now::get);
+        closed = new ConcurrentHashMap<>();
+        closer = new AuctionCloser(engine, TICK,
+                (lotId, winner) -> closed.put(lotId, winner == null ? new Bid(0L, 0L, 0L) : winner),
+                now::get, false);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        closer.close();
+        notifier.shutdown();
+    }
+
+    private void advance(long millis) {
+        now.addAndGet(millis);
+        closer.advanceTo(now.get());
+    }
+
+    @Test
+    public void testClosesAtDeadline() {
+        assertTrue(closer.schedule(1, START + 100));
+        assertTrue(engine.propose(1, new Bid(1L, 10L, 100L)));
+
+        advance(90);
+        assertFalse(engine.isClosed(1));
+        assertTrue(closed.isEmpty());
+
+        advance(10);
+        assertTrue(engine.isClosed(1));
+        assertEquals(100L, closed.get(1L).getPrice());
+        assertEquals(0, closer.getPendingCount());
+    }
+
+    @Test
+    public void testClosedLotIsFrozen() {
+        closer.schedule(1, START + 50);
+        engine.propose(1, new Bid(1L, 10L, 100L));
+        advance(50);
+
+        assertFalse(engine.propose(1, new Bid(2L, 20L, 200L)));
+        assertEquals(100L, engine.getLatestBid(1).getPrice());
+        assertFalse(closer.schedule(1, START + 500));
+    }
+
+    @Test
+    public void testLotWithoutBids() {
+        closer.schedule(1, START + 50);
+        assertNull(engine.getLatestBid(1));
+
+        advance(50);
+        assertEquals(0L, closed.get(1L).getPrice());
+    }
+
+    @Test
+    public void testBidAfterDeadlineIsRejectedBeforeTick() {
+        closer.schedule(1, START + 55);
+        now.set(START + 55);
+
+        assertFalse(engine.propose(1, new Bid(1L, 10L, 100L)));
+        assertNull(engine.getLatestBid(1));
+    }
+
+    @Test
+    public void testAntiSnipingExtendsDeadline() {
+        engine.setAntiSniping(100, 200);
+        closer.schedule(1, START + 1000);
+        engine.propose(1, new Bid(1L, 10L, 100L));
+
+        now.set(START + 950);
+        assertTrue(engine.propose(1, new Bid(2L, 20L, 200L)));
+
+        advance(50);
+        assertFalse(engine.isClosed(1));
+        assertEquals(1, closer.getPendingCount());
+
+        advance(150);
+        assertTrue(engine.isClosed(1));
+        assertEquals(200L, closed.get(1L).getPrice());
+    }
+
+    @Test
+    public void testCancel() {
+        closer.schedule(1, START + 50);
+        closer.cancel(1);
+        assertEquals(0, closer.getPendingCount());
+
+        advance(100);
+        assertFalse(engine.isClosed(1));
+        assertTrue(engine.propose(1, new Bid(1L, 10L, 100L)));
+    }
+
+    @Test
+    public void testCancelUnknownLotCreatesNothing() {
+        closer.cancel(42);
+        assertEquals(0, engine.size());
+
+        closer.schedule(1, START + 50);
+        advance(100);
+        assertTrue(engine.isClosed(1));
+        // cancelling an already fired lot does not reopen it
+        closer.cancel(1);
+        assertTrue(engine.isClosed(1));
+        assertEquals(1, engine.size());
+    }
+
+    @Test
+    public void testReschedule() {
+        closer.schedule(1, START + 50);
+        closer.schedule(1, START + 5000);
+
+        advance(100);
+        assertFalse(engine.isClosed(1));
+
+        advance(4900);
+        assertTrue(engine.isClosed(1));
+    }
+
+    @Test
+    public void testManyLotsAcrossLevels() {
+        int lots = 100_000;
+        for (int i = 0; i < lots; i++) {
+            // up to ~11 days at 10ms per tick, so every wheel level is used
+            closer.schedule(i, START + (i * 997L % 100_000_000L));
+        }
+        for (int i = 0; i < lots; i += 2) {
+            closer.cancel(i);
+        }
+        assertEquals(lots / 2, closer.getPendingCount());
+
+        advance(100_000_000L);
+        assertEquals(lots / 2, closed.size());
+        for (int i = 0; i < lots; i++) {
+            assertEquals(i % 2 == 1, engine.isClosed(i));
+        }
+    }
+
+    @Test
+    public void testNeverFiresEarly() {
+        for (int i = 0; i < 10_000; i++) {
+            closer.schedule(i, START + i * 7L);
+        }
+        for (long t = START + TICK; t <= START + 70_000; t += TICK) {
+            now.set(t);
+            closer.advanceTo(t);
+            for (Long lotId : closed.keySet()) {
+                assertTrue(START + lotId * 7 <= t);
+            }
+            assertEquals(Math.min(10_000, (t - START) / 7 + 1), closed.size());
+        }
+    }
+
+    @Test
+    public void testTicker() throws InterruptedException {
+        AuctionCloser real = new AuctionCloser(engine, 5, (lotId, winner) -> closed.put(lotId, winner));
+        engine.setClock(System::currentTimeMillis);
+        real.schedule(1, System.currentTimeMillis() + 20);
+        engine.propose(1, new Bid(1L, 10L, 100L));
+
+        for (int i = 0; i < 200 && !closed.containsKey(1L); i++) {
+            Thread.sleep(10);
+        }
+        real.close();
+        assertTrue(engine.isClosed(1));
+        assertEquals(100L, closed.get(1L).getPrice());
+    }
+
+    @Test
+    public void testThrowingListenerDoesNotStopOtherLots() {
+        AuctionCloser failing = new AuctionCloser(engine, TICK, (lotId, winner) -> {
+            if (lotId == 1) {
+                throw new IllegalStateException("listener failed");
+            }
+            closed.put(lotId, winner == null ? new Bid(0L, 0L, 0L) : winner);
+        }, now::get, false);
+        for (long lot = 1; lot <= 3; lot++) {
+            assertTrue(failing.schedule(lot, START + 50));
+        }
+        assertTrue(failing.schedule(4, START + 100));
+
+        advance(50);
+        failing.advanceTo(now.get());
+        assertTrue(engine.isClosed(1));
+        assertTrue(closed.containsKey(2L));
+        assertTrue(closed.containsKey(3L));
+
+        advance(50);
+        failing.advanceTo(now.get());
+        assertTrue(closed.containsKey(4L));
+        assertEquals(0, failing.getPendingCount());
+    }
+
+    @Test
+    public void testTickerSurvivesThrowingListener() throws InterruptedException {
+        CountDownLatch secondClosed = new CountDownLatch(1);
+        AuctionCloser ticking = new AuctionCloser(engine, TICK, (lotId, winner) -> {
+            if (lotId == 1) {
+                throw new IllegalStateException("listener failed");
+            }
+            secondClosed.countDown();
+        }, now::get, true);
+        try {
+            assertTrue(ticking.schedule(1, START + TICK));
+            assertTrue(ticking.schedule(2, START + 5 * TICK));
+            now.addAndGet(TICK);
+            // wait for the failing tick before the second deadline comes due
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!engine.isClosed(1) && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertTrue(engine.isClosed(1));
+
+            now.addAndGet(4 * TICK);
+            assertTrue(secondClosed.await(5, TimeUnit.SECONDS));
+        } finally {
+            ticking.close();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package course.concurrency.exams.auction;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AuctionEngineBenchmarks {
+
+    public static final int LOTS = 1_000_000;
+    // share of bids that go to the hot lots in the skewed distribution
+    public static final int HOT_PERCENT = 90;
+    public static final int HOT_LOTS = 16;
+
+    @Param({"UNIFORM", "SKEWED"})
+    public String distribution;
+
+    private Notifier notifier;
+    private AuctionEngine engine;
+
+    @Setup
+    public void setup() {
+        notifier = new Notifier() {
+            @Override
+            public void sendOutdatedMessage(Bid bid) {}
+        };
+        engine = new AuctionEngine(notifier, Runtime.getRuntime().availableProcessors() * 16, LOTS);
+        for (long lot = 0; lot < LOTS; lot++) {
+            engine.propose(lot, lot, lot, 0L);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        notifier.shutdown();
+    }
+
+    @State(Scope.Thread)
+    public static class Bidder {
+        private long price;
+
+        long nextLot(String distribution) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if ("SKEWED".equals(distribution) && random.nextInt(100) < HOT_PERCENT) {
+                return random.nextInt(HOT_LOTS);
+            }
+            return random.nextInt(LOTS);
+        }
+
+        long nextPrice() {
+            // mostly rising prices with a share of losing bids
+            price += ThreadLocalRandom.current().nextInt(-2, 4);
+            return price;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AuctionEngineBenchmarks.class.getSimpleName())
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean propose_1(Bidder bidder) {
+        return propose(bidder);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean propose_4(Bidder bidder) {
+        return propose(bidder);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean propose_max(Bidder bidder) {
+        return propose(bidder);
+    }
+
+    private boolean propose(Bidder bidder) {
+        long price = bidder.nextPrice();
+        return engine.propose(bidder.nextLot(distribution), price, price, price);
+    }
+}
@@ -0,0 +1,81 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuctionEngineTests {
+
+    private static final int lots = 100_000;
+    private static final int iterations = 200_000;
+    private static final int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+    private Notifier notifier;
+
+    @BeforeEach
+    public void setup() {
+        notifier = new Notifier();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        notifier.shutdown();
+    }
+
+    @Test
+    public void testSingleLot() {
+        AuctionEngine engine = new AuctionEngine(notifier);
+
+        assertNull(engine.getLatestBid(1));
+        assertTrue(engine.propose(1, new Bid(1L, 10L, 100L)));
+        assertFalse(engine.propose(1, new Bid(2L, 20L, 100L)));
+        assertTrue(engine.propose(1, new Bid(3L, 30L, 101L)));
+
+        Bid latest = engine.getLatestBid(1);
+        assertEquals(3L, latest.getId());
+        assertEquals(30L, latest.getParticipantId());
+        assertEquals(101L, latest.getPrice());
+        assertNull(engine.getLatestBid(2));
+    }
+
+    @Test
+    public void testCorrectLatestBidPerLot() throws InterruptedException {
+        AuctionEngine engine = new AuctionEngine(notifier, 4, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        for (int i = 0; i < poolSize; i++) {
+            int shift = i;
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+
+                for (int it = 0; it < iterations; it++) {
+                    long lot = (it + shift) % lots;
+                    long price = it + shift;
+                    engine.propose(lot, new Bid(price, (long) shift, price));
+                }
+            });
+        }
+
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(20, TimeUnit.SECONDS));
+
+        assertEquals(lots, engine.size());
+        for (long lot = 0; lot < lots; lot++) {
+            // the highest price for a lot comes from the last round that reaches it
+            long expected = lot + ((iterations - 1 + poolSize - 1 - lot) / lots) * lots;
+            assertEquals(expected, engine.getLatestBid(lot).getPrice());
+            assertEquals(expected, engine.getLatestPrice(lot));
+        }
+    }
+}
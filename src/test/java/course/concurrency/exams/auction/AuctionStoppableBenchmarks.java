@@ -0,0 +1,97 @@
+package course.concurrency.exams.auction;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Same price stream as AuctionStoppableTests: triples of i-1, i, i+1 with
+ * growing i, shared by all proposing threads. Bids are proposed as
+ * primitives, so implementations that allocate only for a winning bid are
+ * measured without the caller's allocation.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AuctionStoppableBenchmarks {
+
+    // Change WRITERS and READERS to experiment
+    public static final int WRITERS = 7;
+    public static final int READERS = 1;
+
+    @Param({"pessimistic", "optimistic", "lock-free"})
+    public String implementation;
+
+    private final AtomicLong ticket = new AtomicLong();
+    private Notifier notifier;
+    private AuctionStoppable auction;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        notifier = new Notifier() {
+            @Override
+            public void sendOutdatedMessage(Bid bid) {}
+        };
+        switch (implementation) {
+            case "pessimistic":
+                auction = new AuctionStoppablePessimistic(notifier);
+                break;
+            case "optimistic":
+                auction = new AuctionStoppableOptimistic(notifier);
+                break;
+            case "lock-free":
+                auction = new AuctionStoppableLockFree(notifier);
+                break;
+            default:
+                throw new IllegalArgumentException(implementation);
+        }
+        ticket.set(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        notifier.shutdown();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AuctionStoppableBenchmarks.class.getSimpleName())
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    private long nextPrice() {
+        long n = ticket.getAndIncrement();
+        return n / 3 - 1 + n % 3;
+    }
+
+    @Benchmark
+    @Group("propose")
+    @GroupThreads(WRITERS + READERS)
+    public boolean propose() {
+        long price = nextPrice();
+        return auction.propose(price, price, price);
+    }
+
+    @Benchmark
+    @Group("propose_latest")
+    @GroupThreads(WRITERS)
+    public boolean proposeWithReaders() {
+        long price = nextPrice();
+        return auction.propose(price, price, price);
+    }
+
+    @Benchmark
+    @Group("propose_latest")
+    @GroupThreads(READERS)
+    public Bid readLatest() {
+        return auction.getLatestBid();
+    }
+}
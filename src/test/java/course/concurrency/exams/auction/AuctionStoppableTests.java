@@ -2,10 +2,13 @@ package course.concurrency.exams.auction;
 
 import org.junit.jupiter.api.*;
 
+import java.time.Duration;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 
 public class AuctionStoppableTests {
 
@@ -13,7 +16,8 @@ public class AuctionStoppableTests {
     private static final ExecutionStatistics stat = new ExecutionStatistics();
 
     private static final int iterations = 1_000_000;
-    private static final int poolSize = Runtime.getRuntime().availableProcessors();
+    // at least 3, or the price the stopped-auction tests stop at is never proposed
+    private static final int poolSize = Math.max(Runtime.getRuntime().availableProcessors(), 3);
     private static final int bidCount = iterations * poolSize;
 
     private ExecutorService executor;
@@ -57,6 +61,12 @@ public class AuctionStoppableTests {
         testCorrectLatestBid(optimistic, "optimistic");
     }
 
+    @RepeatedTest(TEST_COUNT)
+    public void testLockFree() throws InterruptedException {
+        AuctionStoppable lockFree = new AuctionStoppableLockFree(notifier);
+        testCorrectLatestBid(lockFree, "lock-free");
+    }
+
     public void testCorrectLatestBid(AuctionStoppable auction, String tag) throws InterruptedException {
         CountDownLatch latch = new CountDownLatch(1);
 
@@ -96,6 +106,12 @@ public class AuctionStoppableTests {
         testStoppedAuction(auction);
     }
 
+    @Test
+    public void testStoppedAuctionLockFree() throws InterruptedException {
+        AuctionStoppable auction = new AuctionStoppableLockFree(notifier);
+        testStoppedAuction(auction);
+    }
+
     public void testStoppedAuction(AuctionStoppable auction) throws InterruptedException {
         CountDownLatch latch = new CountDownLatch(1);
         int priceToStop = iterations;
@@ -125,4 +141,31 @@ public class AuctionStoppableTests {
 
         assertEquals(latestBidWhenStopped.get().getPrice(), auction.getLatestBid().getPrice());
     }
+
+    @Test
+    public void testProposeAfterStopPessimistic() {
+        testProposeAfterStop(new AuctionStoppablePessimistic(notifier));
+    }
+
+    // used to livelock retrying a CAS that expected an unmarked reference
+    @Test
+    public void testProposeAfterStopOptimistic() {
+        testProposeAfterStop(new AuctionStoppableOptimistic(notifier));
+    }
+
+    @Test
+    public void testProposeAfterStopLockFree() {
+        testProposeAfterStop(new AuctionStoppableLockFree(notifier));
+    }
+
+    public void testProposeAfterStop(AuctionStoppable auction) {
+        auction.propose(new Bid(1L, 1L, 1L));
+        Bid stopped = auction.stopAuction();
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            assertFalse(auction.propose(new Bid(2L, 2L, 2L)));
+            assertFalse(auction.propose(3L, 3L, 3L));
+        });
+        assertEquals(stopped.getPrice(), auction.getLatestBid().getPrice());
+        assertEquals(1L, auction.getLatestBid().getPrice());
+    }
 }
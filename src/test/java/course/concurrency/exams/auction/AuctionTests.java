@@ -5,6 +5,8 @@ import org.junit.jupiter.api.*;
 import java.util.concurrent.*;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AuctionTests {
 
@@ -56,7 +58,93 @@ public class AuctionTests {
         testCorrectLatestBid(auction, "pessimistic");
     }
 
+    @RepeatedTest(TEST_COUNT)
+    public void testAdaptive() throws InterruptedException {
+        Auction auction = new AuctionAdaptive(notifier);
+        testCorrectLatestBid(auction, "adaptive");
+    }
+
+    @Test
+    public void testAdaptiveSwitchesModes() {
+        AuctionAdaptive auction = new AuctionAdaptive(notifier, 0);
+        // failures per proposal of a contended, a moderate and a quiet window
+        long contended = 60, moderate = 10, quiet = 1;
+
+        assertTrue(auction.propose(1, 1, 1));
+        assertEquals(AuctionAdaptive.Mode.CAS, auction.getMode());
+        auction.adapt(100, contended);
+        assertEquals(AuctionAdaptive.Mode.BACKOFF, auction.getMode());
+        assertTrue(auction.propose(2, 2, 2));
+        auction.adapt(100, contended);
+        assertEquals(AuctionAdaptive.Mode.LOCK, auction.getMode());
+        assertTrue(auction.propose(3, 3, 3));
+        assertFalse(auction.propose(4, 4, 2));
+        auction.adapt(100, contended);
+        auction.adapt(100, moderate);
+        assertEquals(AuctionAdaptive.Mode.LOCK, auction.getMode());
+        assertEquals(2, auction.getModeSwitches());
+
+        auction.adapt(100, quiet);
+        assertEquals(AuctionAdaptive.Mode.BACKOFF, auction.getMode());
+        auction.adapt(100, quiet);
+        auction.adapt(100, quiet);
+        assertEquals(AuctionAdaptive.Mode.CAS, auction.getMode());
+        assertEquals(4, auction.getModeSwitches());
+
+        assertEquals(1, auction.getProposals(AuctionAdaptive.Mode.CAS));
+        assertEquals(1, auction.getProposals(AuctionAdaptive.Mode.BACKOFF));
+        assertEquals(2, auction.getProposals(AuctionAdaptive.Mode.LOCK));
+        assertEquals(3, auction.getLatestBid().getPrice());
+    }
+
+    @RepeatedTest(TEST_COUNT)
+    public void testFlatCombining() throws InterruptedException {
+        Auction auction = new AuctionFlatCombining(notifier);
+        testCorrectLatestBid(auction, "flat_combining");
+    }
+
+    @RepeatedTest(TEST_COUNT)
+    public void testFlatCombiningPrimitive() throws InterruptedException {
+        Auction auction = new AuctionFlatCombining(notifier);
+        testCorrectLatestBid(auction, "flat_combining_primitive", true);
+    }
+
+    @Test
+    public void testFlatCombiningReclaimsIdleSlots() throws InterruptedException {
+        AuctionFlatCombining auction = new AuctionFlatCombining(notifier);
+        for (int i = 1; i <= 100; i++) {
+            long price = i;
+            Thread thread = new Thread(() -> auction.propose(price, price, price));
+            thread.start();
+            thread.join();
+        }
+        assertEquals(100, auction.getSlotCount());
+
+        // enough passes of one live thread for the idle slots to age out
+        for (long price = 101; price <= 1000; price++) {
+            auction.propose(price, price, price);
+        }
+        assertTrue(auction.getSlotCount() <= 2, "slots " + auction.getSlotCount());
+        assertEquals(1000L, auction.getLatestBid().getPrice());
+    }
+
+    @RepeatedTest(TEST_COUNT)
+    public void testOptimisticPrimitive() throws InterruptedException {
+        Auction auction = new AuctionOptimistic(notifier);
+        testCorrectLatestBid(auction, "optimistic_primitive", true);
+    }
+
+    @RepeatedTest(TEST_COUNT)
+    public void testPessimisticPrimitive() throws InterruptedException {
+        Auction auction = new AuctionPessimistic(notifier);
+        testCorrectLatestBid(auction, "pessimistic_primitive", true);
+    }
+
     public void testCorrectLatestBid(Auction auction, String tag) throws InterruptedException {
+        testCorrectLatestBid(auction, tag, false);
+    }
+
+    public void testCorrectLatestBid(Auction auction, String tag, boolean primitive) throws InterruptedException {
         CountDownLatch latch = new CountDownLatch(1);
         for (int i = 0; i < poolSize; i++) {
 
@@ -67,8 +155,11 @@ public class AuctionTests {
 
                 for (int it = 0; it < iterations; it++) {
                     long value = priceQueue.poll();
-                    Bid bid = new Bid(value, value, value);
-                    auction.propose(bid);
+                    if (primitive) {
+                        auction.propose(value, value, value);
+                    } else {
+                        auction.propose(new Bid(value, value, value));
+                    }
                     if (it % 200 == 0) {
                         auction.getLatestBid();
                     }
@@ -0,0 +1,153 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BidJournalTests {
+
+    private static final int lots = 1000;
+    private static final int iterations = 100_000;
+    private static final int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+    @TempDir
+    Path dir;
+
+    private Notifier notifier;
+
+    @BeforeEach
+    public void setup() {
+        notifier = new Notifier();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        notifier.shutdown();
+    }
+
+    @Test
+    public void testReplayRestoresLatestBidPerLot() throws InterruptedException {
+        Path file = dir.resolve("bids.journal");
+        AuctionEngine engine;
+        // small segments so the journal rolls over several mappings
+        try (BidJournal journal = new BidJournal(file, BidJournal.SyncPolicy.PERIODIC, 5, BidJournal.RECORD_SIZE * 1000L)) {
+            engine = new AuctionEngine(notifier, 4, lots, journal);
+            ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+            CountDownLatch latch = new CountDownLatch(1);
+            for (int i = 0; i < poolSize; i++) {
+                int shift = i;
+                executor.submit(() -> {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException ignored) {}
+                    for (int it = 0; it < iterations; it++) {
+                        long price = it + shift;
+                        engine.propose(price % lots, price, shift, price);
+                    }
+                });
+            }
+            latch.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(20, TimeUnit.SECONDS));
+        }
+
+        try (BidJournal journal = new BidJournal(file)) {
+            AuctionEngine recovered = new AuctionEngine(notifier, 4, lots);
+            long records = journal.replayInto(recovered);
+
+            assertEquals(journal.size(), records);
+            assertEquals(lots, recovered.size());
+            for (long lot = 0; lot < lots; lot++) {
+                Bid expected = engine.getLatestBid(lot);
+                Bid actual = recovered.getLatestBid(lot);
+                assertEquals(expected.getPrice(), actual.getPrice());
+                assertEquals(expected.getParticipantId(), actual.getParticipantId());
+            }
+        }
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws Exception {
+        Path file = dir.resolve("torn.journal");
+        try (BidJournal journal = new BidJournal(file)) {
+            journal.append(1, 1, 1, 10);
+            journal.append(2, 2, 2, 20);
+            journal.append(1, 3, 3, 30);
+        }
+        // break the price of the last record
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(2 * BidJournal.RECORD_SIZE + 24);
+            raf.writeLong(31);
+        }
+
+        try (BidJournal journal = new BidJournal(file)) {
+            assertEquals(2, journal.size());
+            journal.append(1, 4, 4, 40);
+
+            AuctionEngine recovered = new AuctionEngine(notifier);
+            assertEquals(3, journal.replayInto(recovered));
+            assertEquals(40L, recovered.getLatestBid(1).getPrice());
+            assertEquals(20L, recovered.getLatestBid(2).getPrice());
+        }
+    }
+
+    @Test
+    public void testCompleteRecordsAfterTornOneAreKept() throws Exception {
+        Path file = dir.resolve("hole.journal");
+        try (BidJournal journal = new BidJournal(file)) {
+            journal.append(1, 1, 1, 10);
+            journal.append(2, 2, 2, 20);
+            journal.append(1, 3, 3, 30);
+        }
+        // the middle append never finished, the one after it did
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(BidJournal.RECORD_SIZE + 24);
+            raf.writeLong(21);
+        }
+
+        try (BidJournal journal = new BidJournal(file)) {
+            assertEquals(3, journal.size());
+            journal.append(2, 4, 4, 40);
+
+            AuctionEngine recovered = new AuctionEngine(notifier);
+            assertEquals(3, journal.replayInto(recovered));
+            assertEquals(30L, recovered.getLatestBid(1).getPrice());
+            assertEquals(40L, recovered.getLatestBid(2).getPrice());
+        }
+    }
+
+    @Test
+    public void testAppendsAcrossSegmentsWithConcurrentSync() throws Exception {
+        Path file = dir.resolve("segments.journal");
+        int records = 10_000;
+        try (BidJournal journal = new BidJournal(file, BidJournal.SyncPolicy.PERIODIC, 1,
+                64L * BidJournal.RECORD_SIZE)) {
+            ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+            for (int i = 0; i < records; i++) {
+                long price = i;
+                executor.execute(() -> journal.append(price % lots, price, price, price));
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            journal.sync();
+        }
+
+        try (BidJournal journal = new BidJournal(file, BidJournal.SyncPolicy.OS, 0, 64L * BidJournal.RECORD_SIZE)) {
+            assertEquals(records, journal.size());
+            long[] count = new long[1];
+            assertEquals(records, journal.replay((lotId, id, participantId, price) -> count[0]++));
+            assertEquals(records, count[0]);
+        }
+    }
+}
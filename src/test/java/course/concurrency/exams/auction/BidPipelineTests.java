@@ -0,0 +1,78 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BidPipelineTests {
+
+    private static final int lots = 10_000;
+    private static final int iterations = 200_000;
+    private static final int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+    @Test
+    public void testCorrectLatestBidPerLot() throws InterruptedException {
+        LongAdder outdated = new LongAdder();
+        Notifier notifier = new Notifier() {
+            @Override
+            public void sendOutdatedMessage(Bid bid) {
+                outdated.increment();
+            }
+        };
+        // a small ring so producers hit backpressure
+        BidPipeline pipeline = new BidPipeline(notifier, 2, 1 << 8);
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        for (int i = 0; i < poolSize; i++) {
+            int shift = i;
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+                for (int it = 0; it < iterations; it++) {
+                    long price = it + shift;
+                    pipeline.submit(price % lots, price, shift, price);
+                    if (it % 1000 == 0) {
+                        pipeline.getLatestBid(price % lots);
+                    }
+                }
+            });
+        }
+
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        pipeline.flush();
+
+        long maxPrice = iterations - 1 + poolSize - 1;
+        for (long lot = 0; lot < lots; lot++) {
+            long expected = lot + ((maxPrice - lot) / lots) * lots;
+            assertEquals(expected, pipeline.getLatestBid(lot).getPrice());
+        }
+        long submitted = (long) iterations * poolSize;
+        assertEquals(submitted, pipeline.getAppliedLatencyNanos().getCount());
+        assertEquals(outdated.sum(), pipeline.getNotifiedLatencyNanos().getCount());
+
+        pipeline.close();
+        notifier.shutdown();
+    }
+
+    @Test
+    public void testIdleCounterSaturates() {
+        int idle = 0;
+        for (int i = 0; i < 1_000; i++) {
+            idle = LongRingBuffer.nextIdle(idle);
+        }
+        // a long stall stays in the parking phase instead of wrapping around
+        assertTrue(idle > 0);
+        assertEquals(idle, LongRingBuffer.nextIdle(idle));
+    }
+}
@@ -0,0 +1,133 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CoalescingNotifierTests {
+
+    private final Map<Long, List<Bid>> sent = new ConcurrentHashMap<>();
+    private CountDownLatch sends;
+    private CoalescingNotifier notifier;
+
+    @AfterEach
+    public void tearDown() {
+        notifier.shutdown();
+    }
+
+    private CoalescingNotifier createNotifier(int queueCapacity, int expectedSends) {
+        sends = new CountDownLatch(expectedSends);
+        // the window is long enough for the test to flush by hand
+        return new CoalescingNotifier(60_000, queueCapacity, 0, 1000) {
+            @Override
+            protected CompletableFuture<Void> deliver(long participantId, Collection<Bid> bids) {
+                sent.put(participantId, new ArrayList<>(bids));
+                sends.countDown();
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+    }
+
+    @Test
+    public void testBatchesPerParticipantAndDropsSuperseded() throws InterruptedException {
+        notifier = createNotifier(100, 2);
+
+        notifier.sendOutdatedMessage(1, new Bid(1L, 10L, 100L));
+        notifier.sendOutdatedMessage(2, new Bid(2L, 10L, 200L));
+        notifier.sendOutdatedMessage(1, new Bid(3L, 10L, 110L));
+        notifier.sendOutdatedMessage(1, new Bid(4L, 20L, 120L));
+        assertEquals(4, notifier.getQueueDepth());
+
+        notifier.flush();
+        assertTrue(sends.await(5, TimeUnit.SECONDS));
+
+        assertEquals(0, notifier.getQueueDepth());
+        assertEquals(2, sent.get(10L).size());
+        assertEquals(110L, sent.get(10L).get(0).getPrice());
+        assertEquals(1, sent.get(20L).size());
+        assertEquals(1, notifier.getCoalescedCount());
+        assertEquals(2, notifier.getBatchCount());
+        assertEquals(2, notifier.getMaxBatchSize());
+    }
+
+    @Test
+    public void testFullQueueDropsEvents() {
+        notifier = createNotifier(2, 0);
+
+        for (long i = 0; i < 5; i++) {
+            notifier.sendOutdatedMessage(i, new Bid(i, i, i));
+        }
+
+        assertEquals(2, notifier.getAcceptedCount());
+        assertEquals(3, notifier.getDroppedCount());
+        assertEquals(2, notifier.getQueueDepth());
+    }
+
+    @Test
+    public void testOutstandingSendsAreBounded() throws InterruptedException {
+        List<CompletableFuture<Void>> pending = new CopyOnWriteArrayList<>();
+        notifier = new CoalescingNotifier(DeliveryBackend.fixedPool(), 60_000, 100, 0, 1000, 2) {
+            @Override
+            protected CompletableFuture<Void> deliver(long participantId, Collection<Bid> bids) {
+                CompletableFuture<Void> send = new CompletableFuture<>();
+                pending.add(send);
+                return send;
+            }
+        };
+        for (long i = 0; i < 5; i++) {
+            notifier.sendOutdatedMessage(i, new Bid(i, i, i));
+        }
+
+        Thread flush = new Thread(notifier::flush);
+        flush.start();
+        // the flush waits for a free slot with the third participant
+        while (flush.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+        assertEquals(2, pending.size());
+        assertEquals(2, notifier.getInFlightSendCount());
+        assertEquals(2, notifier.getQueueDepth());
+
+        for (int completed = 0; completed < 5; completed++) {
+            while (pending.size() <= completed) {
+                Thread.onSpinWait();
+            }
+            pending.get(completed).complete(null);
+        }
+        flush.join(5000);
+        assertEquals(5, notifier.getSendCount());
+        assertEquals(0, notifier.getQueueDepth());
+    }
+
+    @Test
+    public void testCancelledSendsCountAsDropped() {
+        notifier = new CoalescingNotifier(DeliveryBackend.fixedPool(), 60_000, 100, 0, 1000) {
+            @Override
+            protected CompletableFuture<Void> deliver(long participantId, Collection<Bid> bids) {
+                CompletableFuture<Void> send = new CompletableFuture<>();
+                send.cancel(false);
+                return send;
+            }
+        };
+        notifier.sendOutdatedMessage(1, new Bid(1L, 10L, 100L));
+        notifier.sendOutdatedMessage(2, new Bid(2L, 10L, 200L));
+
+        notifier.flush();
+
+        assertEquals(0, notifier.getSendCount());
+        assertEquals(2, notifier.getDroppedCount());
+        assertEquals(0, notifier.getQueueDepth());
+    }
+}
@@ -0,0 +1,68 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DeliveryBackendTests {
+
+    @Test
+    public void testAsyncKeepsManyMessagesInFlight() throws Exception {
+        int messages = 100_000;
+        DeliveryBackend backend = new ScheduledDelivery(2000);
+        Bid bid = new Bid(1L, 1L, 1L);
+        try {
+            CompletableFuture<?>[] sent = new CompletableFuture[messages];
+            for (int i = 0; i < messages; i++) {
+                sent[i] = backend.deliver(i, List.of(bid));
+            }
+            assertEquals(messages, backend.inFlight());
+
+            CompletableFuture.allOf(sent).get(10, TimeUnit.SECONDS);
+            assertEquals(0, backend.inFlight());
+        } finally {
+            backend.shutdown();
+        }
+    }
+
+    @Test
+    public void testBlockingDropsUnsentMessagesOnShutdown() throws Exception {
+        DeliveryBackend backend = new BlockingDelivery(Executors.newSingleThreadExecutor(), 500);
+        assertUnsentMessagesCancelled(backend, 1);
+        assertThrows(RejectedExecutionException.class, () -> backend.deliver(1, List.of(new Bid(1L, 1L, 1L))));
+        assertEquals(0, backend.inFlight());
+    }
+
+    @Test
+    public void testAsyncDropsUnsentMessagesOnShutdown() throws Exception {
+        DeliveryBackend backend = new ScheduledDelivery(60_000);
+        assertUnsentMessagesCancelled(backend, 0);
+        assertThrows(RejectedExecutionException.class, () -> backend.deliver(1, List.of(new Bid(1L, 1L, 1L))));
+        assertEquals(0, backend.inFlight());
+    }
+
+    // the messages being sent at shutdown still go out, the rest are cancelled at once
+    private static void assertUnsentMessagesCancelled(DeliveryBackend backend, int beingSent) throws Exception {
+        int messages = 1000;
+        Bid bid = new Bid(1L, 1L, 1L);
+        CompletableFuture<?>[] sent = new CompletableFuture[messages];
+        for (int i = 0; i < messages; i++) {
+            sent[i] = backend.deliver(i, List.of(bid));
+        }
+        backend.shutdown();
+
+        CompletableFuture.allOf(sent).handle((ignored, ex) -> null).get(5, TimeUnit.SECONDS);
+        long cancelled = Arrays.stream(sent).filter(CompletableFuture::isCancelled).count();
+        assertTrue(cancelled >= messages - beingSent, "cancelled " + cancelled);
+        assertEquals(0, backend.inFlight());
+    }
+}
@@ -1,27 +1,55 @@
 package course.concurrency.exams.auction;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.LongSummaryStatistics;
-import java.util.concurrent.ConcurrentHashMap;
+import course.concurrency.exams.LogHistogram;
 
-import static java.util.stream.Collectors.summarizingLong;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+/**
+ * Durations per method in log-bucketed histograms. Every recording thread
+ * gets its own histogram per method, so recording is a plain increment and
+ * memory does not grow with the number of samples. Histograms are merged
+ * when statistics are read.
+ */
 public class ExecutionStatistics {
 
-    private ConcurrentHashMap<String, List<Long>> stat = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Recorder> stat = new ConcurrentHashMap<>();
 
-    public void addData(String method, Long duration) {
-        stat.putIfAbsent(method, new ArrayList<>());
-        stat.get(method).add(duration);
+    public void addData(String method, long duration) {
+        Recorder recorder = stat.get(method);
+        if (recorder == null) {
+            recorder = stat.computeIfAbsent(method, k -> new Recorder());
+        }
+        recorder.local.get().record(duration);
+    }
+
+    public LogHistogram getHistogram(String method) {
+        Recorder recorder = stat.get(method);
+        return recorder == null ? new LogHistogram() : recorder.merge();
     }
 
     public void printStatistics() {
-        stat.forEach((k,v) -> System.out.println(k + ": " + listToStat(v)));
+        stat.forEach((k, v) -> {
+            LogHistogram histogram = v.merge();
+            System.out.println(k + ": " + String.format("mean=%.0f ", histogram.getMean()) + histogram);
+        });
     }
 
-    private String listToStat(List<Long> values) {
-        LongSummaryStatistics stat = values.stream().collect(summarizingLong(Long::valueOf));
-        return String.format("%.0f (%d-%d)", stat.getAverage(), stat.getMin(), stat.getMax());
+    private static final class Recorder {
+        final Queue<LogHistogram> histograms = new ConcurrentLinkedQueue<>();
+        final ThreadLocal<LogHistogram> local = ThreadLocal.withInitial(() -> {
+            LogHistogram histogram = new LogHistogram();
+            histograms.add(histogram);
+            return histogram;
+        });
+
+        LogHistogram merge() {
+            LogHistogram merged = new LogHistogram();
+            for (LogHistogram histogram : histograms) {
+                merged.add(histogram);
+            }
+            return merged;
+        }
     }
 }
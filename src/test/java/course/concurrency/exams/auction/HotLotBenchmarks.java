@@ -0,0 +1,97 @@
+package course.concurrency.exams.auction;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HotLotBenchmarks {
+
+    // Change WRITERS and READERS to experiment
+    public static final int WRITERS = 32;
+    public static final int READERS = 1;
+
+    private Notifier notifier;
+    private Auction optimistic;
+    private Auction pessimistic;
+    private Auction flatCombining;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        notifier = new Notifier() {
+            @Override
+            public void sendOutdatedMessage(Bid bid) {}
+        };
+        optimistic = new AuctionOptimistic(notifier);
+        pessimistic = new AuctionPessimistic(notifier);
+        flatCombining = new AuctionFlatCombining(notifier);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        notifier.shutdown();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(HotLotBenchmarks.class.getName())
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    // nanoTime keeps prices rising across threads without a shared counter
+    private static Bid nextBid() {
+        long price = System.nanoTime();
+        return new Bid(price, price, price);
+    }
+
+    @Benchmark
+    @Group("optimistic")
+    @GroupThreads(WRITERS)
+    public boolean proposeOptimistic() {
+        return optimistic.propose(nextBid());
+    }
+
+    @Benchmark
+    @Group("optimistic")
+    @GroupThreads(READERS)
+    public Bid readOptimistic() {
+        return optimistic.getLatestBid();
+    }
+
+    @Benchmark
+    @Group("pessimistic")
+    @GroupThreads(WRITERS)
+    public boolean proposePessimistic() {
+        return pessimistic.propose(nextBid());
+    }
+
+    @Benchmark
+    @Group("pessimistic")
+    @GroupThreads(READERS)
+    public Bid readPessimistic() {
+        return pessimistic.getLatestBid();
+    }
+
+    @Benchmark
+    @Group("flat_combining")
+    @GroupThreads(WRITERS)
+    public boolean proposeFlatCombining() {
+        return flatCombining.propose(nextBid());
+    }
+
+    @Benchmark
+    @Group("flat_combining")
+    @GroupThreads(READERS)
+    public Bid readFlatCombining() {
+        return flatCombining.getLatestBid();
+    }
+}
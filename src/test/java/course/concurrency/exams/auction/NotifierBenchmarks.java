@@ -0,0 +1,77 @@
+package course.concurrency.exams.auction;
+
+import course.concurrency.exams.VirtualThreads;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to get a burst of outbid messages delivered. VIRTUAL needs JDK 21+,
+ * on older JDKs its setup fails and JMH moves on to the next backend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class NotifierBenchmarks {
+
+    @Param({"FIXED_POOL", "ASYNC", "VIRTUAL"})
+    public String backendType;
+
+    @Param({"10000"})
+    public int messages;
+
+    @Param({"5"})
+    public long sendMillis;
+
+    private DeliveryBackend backend;
+    private final Bid bid = new Bid(1L, 1L, 1L);
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        switch (backendType) {
+            case "FIXED_POOL":
+                backend = new BlockingDelivery(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()), sendMillis);
+                break;
+            case "ASYNC":
+                backend = new ScheduledDelivery(sendMillis);
+                break;
+            case "VIRTUAL":
+                backend = new BlockingDelivery(VirtualThreads.newPerTaskExecutor(), sendMillis);
+                break;
+            default:
+                throw new IllegalArgumentException(backendType);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        backend.shutdown();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(NotifierBenchmarks.class.getSimpleName())
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Benchmark
+    public void deliverBurst() {
+        CompletableFuture<?>[] sent = new CompletableFuture[messages];
+        for (int i = 0; i < messages; i++) {
+            sent[i] = backend.deliver(i, List.of(bid));
+        }
+        CompletableFuture.allOf(sent).join();
+    }
+}
@@ -0,0 +1,80 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TopKBidsTests {
+
+    private static final int k = 10;
+    private static final int iterations = 100_000;
+    private static final int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+    private Notifier notifier;
+
+    @BeforeEach
+    public void setup() {
+        notifier = new Notifier();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        notifier.shutdown();
+    }
+
+    @Test
+    public void testKeepsHighestBids() throws InterruptedException {
+        TopKBids topBids = new TopKBids(k);
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        for (int i = 0; i < poolSize; i++) {
+            int shift = i;
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+                for (long price = shift; price < (long) iterations * poolSize; price += poolSize) {
+                    topBids.offer(new Bid(price, (long) shift, price));
+                    if (price % 1000 == 0) {
+                        topBids.snapshot();
+                    }
+                }
+            });
+        }
+
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(20, TimeUnit.SECONDS));
+
+        List<Bid> snapshot = topBids.snapshot();
+        assertEquals(k, snapshot.size());
+        for (int i = 0; i < k; i++) {
+            assertEquals((long) iterations * poolSize - 1 - i, snapshot.get(i).getPrice());
+        }
+        assertFalse(topBids.offer(new Bid(1L, 1L, 1L)));
+    }
+
+    @Test
+    public void testSecondPrice() {
+        RankedAuction auction = new RankedAuction(new AuctionOptimistic(notifier), 3);
+
+        assertTrue(auction.propose(new Bid(1L, 1L, 100L)));
+        assertTrue(auction.propose(new Bid(2L, 2L, 150L)));
+        assertFalse(auction.propose(new Bid(3L, 3L, 120L)));
+
+        assertEquals(150L, auction.getLatestBid().getPrice());
+        assertEquals(120L, auction.getSecondPrice());
+        assertEquals(3, auction.getTopBids().size());
+    }
+}
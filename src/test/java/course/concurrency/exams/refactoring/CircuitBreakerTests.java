@@ -0,0 +1,111 @@
+package course.concurrency.exams.refactoring;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitBreakerTests {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private CircuitBreaker newBreaker() {
+        return new CircuitBreaker(3, 1000, 8000, now::get);
+    }
+
+    private void advanceMillis(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private static void trip(CircuitBreaker breaker, int failures) {
+        for (int i = 0; i < failures; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+    }
+
+    @Test
+    public void testFailureReportsOpening() {
+        CircuitBreaker breaker = newBreaker();
+        assertFalse(breaker.onFailure());
+        assertFalse(breaker.onFailure());
+        assertTrue(breaker.onFailure());
+    }
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = newBreaker();
+        trip(breaker, 2);
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        trip(breaker, 2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        trip(breaker, 1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testHalfOpenLetsOneProbeThrough() {
+        CircuitBreaker breaker = newBreaker();
+        trip(breaker, 3);
+
+        advanceMillis(1000);
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testReleasedProbeLetsNextOneThrough() {
+        CircuitBreaker breaker = newBreaker();
+        trip(breaker, 3);
+
+        advanceMillis(1000);
+        assertTrue(breaker.tryAcquire());
+        breaker.release();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testBackoffIsJitteredAndGrows() {
+        CircuitBreaker breaker = newBreaker();
+        trip(breaker, 3);
+
+        // first backoff is between 500 and 1000 ms
+        advanceMillis(499);
+        assertFalse(breaker.tryAcquire());
+        advanceMillis(501);
+        assertTrue(breaker.tryAcquire());
+
+        // failed probe, the second backoff is between 1000 and 2000 ms
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        advanceMillis(999);
+        assertFalse(breaker.tryAcquire());
+        advanceMillis(1001);
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testBackoffIsCapped() {
+        CircuitBreaker breaker = newBreaker();
+        trip(breaker, 3);
+        for (int i = 0; i < 10; i++) {
+            advanceMillis(8000);
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+        advanceMillis(8000);
+        assertTrue(breaker.tryAcquire());
+    }
+}
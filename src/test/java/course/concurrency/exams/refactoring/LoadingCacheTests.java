@@ -0,0 +1,134 @@
+package course.concurrency.exams.refactoring;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadingCacheTests {
+
+    @Test
+    public void testSingleFlightLoading() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        Others.LoadingCache<String, Others.RouterClient> cache = new Others.LoadingCache<>(addr -> {
+            loads.incrementAndGet();
+            try {
+                loading.await();
+            } catch (InterruptedException ignored) {}
+            return newClient();
+        }, 0, 16, Runnable::run);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Others.RouterClient>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> cache.get("router")));
+        }
+        Thread.sleep(100);
+        loading.countDown();
+
+        Others.RouterClient first = results.get(0).get(1, TimeUnit.SECONDS);
+        for (Future<Others.RouterClient> result : results) {
+            assertSame(first, result.get(1, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testExpiredEntryIsReloadedAndClosed() throws InterruptedException {
+        Others.LoadingCache<String, Others.RouterClient> cache =
+                new Others.LoadingCache<>(addr -> newClient(), 20, 16, Runnable::run);
+
+        Others.RouterClient first = cache.get("router");
+        assertSame(first, cache.get("router"));
+        assertEquals(1, cache.getHitCount());
+
+        Thread.sleep(40);
+        Others.RouterClient second = cache.get("router");
+        assertNotSame(first, second);
+        assertTrue(first.isClosed());
+        assertFalse(second.isClosed());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testCleanUpRemovesOnlyExpired() throws InterruptedException {
+        Others.LoadingCache<String, Others.RouterClient> cache =
+                new Others.LoadingCache<>(addr -> newClient(), 20, 16, Runnable::run);
+
+        Others.RouterClient shortLived = cache.get("short");
+        Others.RouterClient longLived = newClient();
+        cache.add("long", longLived, 60_000);
+
+        Thread.sleep(40);
+        cache.cleanUp();
+        assertEquals(1, cache.size());
+        assertTrue(shortLived.isClosed());
+        assertFalse(longLived.isClosed());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws InterruptedException {
+        Others.LoadingCache<String, Others.RouterClient> cache =
+                new Others.LoadingCache<>(addr -> newClient(), 0, 2, Runnable::run);
+
+        Others.RouterClient a = cache.get("a");
+        Thread.sleep(1);
+        Others.RouterClient b = cache.get("b");
+        Thread.sleep(1);
+        cache.get("a");
+        Thread.sleep(1);
+        cache.get("c");
+
+        assertEquals(2, cache.size());
+        assertTrue(b.isClosed());
+        assertFalse(a.isClosed());
+        assertSame(a, cache.get("a"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+        Others.LoadingCache<String, Others.RouterClient> cache = new Others.LoadingCache<>(addr -> {
+            if (loads.incrementAndGet() == 1) {
+                throw new IllegalStateException("unreachable");
+            }
+            return newClient();
+        }, 0, 16, Runnable::run);
+
+        assertThrows(CompletionException.class, () -> cache.get("router"));
+        assertNotNull(cache.get("router"));
+        assertEquals(1, cache.getLoadFailureCount());
+    }
+
+    @Test
+    public void testClosedOnExecutor() throws InterruptedException {
+        ExecutorService closer = Executors.newSingleThreadExecutor();
+        Others.LoadingCache<String, Others.RouterClient> cache =
+                new Others.LoadingCache<>(addr -> newClient(), 0, 16, closer);
+
+        Others.RouterClient client = cache.get("router");
+        cache.invalidateAll();
+        closer.shutdown();
+        assertTrue(closer.awaitTermination(1, TimeUnit.SECONDS));
+        assertTrue(client.isClosed());
+        assertEquals(0, cache.size());
+    }
+
+    private static Others.RouterClient newClient() {
+        return new Others.RouterClient("router", new LocalRouterServer());
+    }
+}
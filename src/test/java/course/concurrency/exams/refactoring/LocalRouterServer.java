@@ -0,0 +1,109 @@
+package course.concurrency.exams.refactoring;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process stand-in for the admin servers of routers. Opening a
+ * connection and making a call cost the given time, a connection takes
+ * any number of calls at once. Counts what clients did to it, and can be
+ * taken down to make connects and calls fail.
+ */
+public class LocalRouterServer implements Others.RouterClient.Connector {
+
+    private final long connectCostNanos;
+    private final long callCostNanos;
+    private final LongAdder connects = new LongAdder();
+    private final LongAdder calls = new LongAdder();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicInteger maxCallsPerConnection = new AtomicInteger();
+    private volatile boolean down;
+
+    public LocalRouterServer() {
+        this(0, 0);
+    }
+
+    public LocalRouterServer(long connectCostMicros, long callCostMicros) {
+        this.connectCostNanos = TimeUnit.MICROSECONDS.toNanos(connectCostMicros);
+        this.callCostNanos = TimeUnit.MICROSECONDS.toNanos(callCostMicros);
+    }
+
+    @Override
+    public Others.RouterClient.Connection connect(String adminAddress) throws IOException {
+        pause(connectCostNanos);
+        if (down) {
+            throw new ConnectException("Connection refused: " + adminAddress);
+        }
+        connects.increment();
+        openConnections.incrementAndGet();
+        return new LocalConnection();
+    }
+
+    public void setDown(boolean down) {
+        this.down = down;
+    }
+
+    public long getConnectCount() {
+        return connects.sum();
+    }
+
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    public int getOpenConnectionCount() {
+        return openConnections.get();
+    }
+
+    // most calls one connection has carried at the same time
+    public int getMaxCallsPerConnection() {
+        return maxCallsPerConnection.get();
+    }
+
+    private static void pause(long nanos) throws InterruptedIOException {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private final class LocalConnection implements Others.RouterClient.Connection {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicBoolean open = new AtomicBoolean(true);
+
+        @Override
+        public boolean refresh() throws IOException {
+            if (!open.get()) {
+                throw new IOException("Connection closed");
+            }
+            maxCallsPerConnection.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                pause(callCostNanos);
+                if (down) {
+                    throw new IOException("Connection reset");
+                }
+                calls.increment();
+                return true;
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (open.compareAndSet(true, false)) {
+                openConnections.decrementAndGet();
+            }
+        }
+    }
+}
@@ -7,12 +7,27 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 
 import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -87,7 +102,8 @@ public class MountTableRefresherServiceTests {
 
         verify(mockedService).log("Not all router admins updated their cache");
         verify(mockedService).log("Mount table entries cache refresh successCount=0,failureCount=4");
-        addresses.forEach(addr -> verify(routerClientsCache).invalidate(addr));
+        // one failure does not open a breaker, the pooled clients are kept
+        verify(routerClientsCache, never()).invalidate(anyString());
     }
 
     @Test
@@ -122,8 +138,7 @@ public class MountTableRefresherServiceTests {
 
         verify(mockedService).log("Not all router admins updated their cache");
         verify(mockedService).log("Mount table entries cache refresh successCount=2,failureCount=2");
-        verify(routerClientsCache).invalidate(addresses.get(1));
-        verify(routerClientsCache).invalidate(addresses.get(3));
+        verify(routerClientsCache, never()).invalidate(anyString());
     }
 
     @Test
@@ -159,7 +174,7 @@ public class MountTableRefresherServiceTests {
         verify(mockedService).log("java.util.concurrent.CompletionException: java.lang.RuntimeException");
         verify(mockedService).log("Not all router admins updated their cache");
         verify(mockedService).log("Mount table entries cache refresh successCount=3,failureCount=1");
-        verify(routerClientsCache).invalidate(addresses.get(1));
+        verify(routerClientsCache, never()).invalidate(anyString());
     }
 
     @Test
@@ -198,7 +213,581 @@ public class MountTableRefresherServiceTests {
 
         verify(mockedService).log("Not all router admins updated their cache");
         verify(mockedService).log("Mount table entries cache refresh successCount=3,failureCount=1");
-        verify(routerClientsCache).invalidate(addresses.get(1));
+        verify(routerClientsCache, never()).invalidate(anyString());
+    }
+
+    @Test
+    @DisplayName("Stuck router is skipped in the next round")
+    public void stuckRouterSkipped() throws InterruptedException {
+        service.setCacheUpdateTimeout(100);
+        MountTableRefresherService mockedService = Mockito.spy(service);
+
+        List<String> addresses = List.of("123", "local6");
+
+        Others.MountTableManager successManager = mock(Others.MountTableManager.class);
+        when(successManager.refresh()).thenReturn(true);
+        CountDownLatch release = new CountDownLatch(1);
+        Others.MountTableManager stuckManager = mock(Others.MountTableManager.class);
+        when(stuckManager.refresh()).thenAnswer(inv -> {
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {}
+            }
+            return true;
+        });
+
+        List<Others.RouterState> states = addresses.stream()
+                .map(Others.RouterState::new)
+                .collect(toList());
+        when(routerStore.getCachedRecords()).thenReturn(states);
+        AtomicLong version = new AtomicLong(1);
+        when(routerStore.getMountTableVersion()).thenAnswer(inv -> version.get());
+        Queue<Pair<String, Others.MountTableManager>> tasks = new LinkedList<>();
+        tasks.offer(new Pair<>(addresses.get(0), successManager));
+        tasks.offer(new Pair<>(addresses.get(1), stuckManager));
+        tasks.offer(new Pair<>(addresses.get(0), successManager));
+        tasks.offer(new Pair<>(addresses.get(1), successManager));
+        when(mockedService.getUpdateTask(anyString())).thenAnswer(inv -> {
+            Pair<String, Others.MountTableManager> poll = tasks.poll();
+            return new Others.UpdateTask(poll.getSecond(), poll.getFirst());
+        });
+
+        mockedService.refresh();
+        version.incrementAndGet();
+        mockedService.refresh();
+        release.countDown();
+
+        verify(mockedService).log("Mount table entries cache refresh successCount=1,failureCount=1");
+        verify(mockedService).log("Mount table entries cache refresh successCount=1,failureCount=0,skippedCount=1");
+        verify(stuckManager).refresh();
+        assertEquals(1, mockedService.getRefreshExecutor().getCancelledCount());
+        RefreshRoundResult.RouterResult skipped = mockedService.getLastRoundResult().getRouters().get(1);
+        assertEquals(RefreshRoundResult.Outcome.SKIPPED, skipped.getOutcome());
+        // only the calls that were made have a latency
+        assertEquals(3, mockedService.getMetrics().getRouterLatencyNanos().getCount());
+    }
+
+    @Test
+    @DisplayName("Only routers behind the mount table version are refreshed")
+    public void onlyStaleRoutersRefreshed() {
+        MountTableRefresherService mockedService = Mockito.spy(service);
+
+        List<String> addresses = List.of("123", "local6", "789", "local");
+        List<Others.RouterState> states = addresses.stream()
+                .map(Others.RouterState::new)
+                .collect(toList());
+        when(routerStore.getCachedRecords()).thenReturn(states);
+        when(routerStore.getMountTableVersion()).thenReturn(1L);
+
+        Others.MountTableManager successManager = mock(Others.MountTableManager.class);
+        when(successManager.refresh()).thenReturn(true);
+        Others.MountTableManager failedManager = mock(Others.MountTableManager.class);
+        when(failedManager.refresh()).thenReturn(false);
+        Queue<Pair<String, Others.MountTableManager>> tasks = new LinkedList<>();
+        tasks.offer(new Pair<>(addresses.get(0), successManager));
+        tasks.offer(new Pair<>(addresses.get(1), failedManager));
+        tasks.offer(new Pair<>(addresses.get(2), successManager));
+        tasks.offer(new Pair<>(addresses.get(3), successManager));
+        tasks.offer(new Pair<>(addresses.get(1), successManager));
+        when(mockedService.getUpdateTask(anyString())).thenAnswer(inv -> {
+            Pair<String, Others.MountTableManager> poll = tasks.poll();
+            return new Others.UpdateTask(poll.getSecond(), poll.getFirst());
+        });
+
+        mockedService.refresh();
+        verify(mockedService).log("Mount table entries cache refresh successCount=3,failureCount=1");
+
+        // only the router that failed is still behind
+        mockedService.refresh();
+        verify(mockedService).log("Mount table entries cache refresh successCount=1,failureCount=0");
+        verify(mockedService, Mockito.times(5)).getUpdateTask(anyString());
+
+        // nothing changed since, no calls at all
+        mockedService.refresh();
+        verify(mockedService, Mockito.times(5)).getUpdateTask(anyString());
+        states.forEach(state -> assertEquals(1L, state.getAppliedVersion()));
+    }
+
+    @Test
+    @DisplayName("Concurrent refresh requests share one round")
+    public void concurrentRefreshesCoalesced() {
+        service.setRefreshDebounceMillis(100);
+        MountTableRefresherService mockedService = Mockito.spy(service);
+        when(manager.refresh()).thenReturn(true);
+        when(mockedService.getUpdateTask(anyString()))
+                .thenAnswer(inv -> new Others.UpdateTask(manager, inv.getArgument(0)));
+
+        AtomicLong version = new AtomicLong(1);
+        when(routerStore.getMountTableVersion()).thenAnswer(inv -> version.get());
+        List<Others.RouterState> states = List.of("123", "local6", "789", "local").stream()
+                .map(Others.RouterState::new)
+                .collect(toList());
+        when(routerStore.getCachedRecords()).thenReturn(states);
+
+        List<CompletableFuture<RefreshRoundResult>> rounds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            version.incrementAndGet();
+            rounds.add(mockedService.refreshAsync());
+        }
+        rounds.forEach(round -> assertSame(rounds.get(0), round));
+        rounds.get(0).join();
+
+        verify(manager, Mockito.times(4)).refresh();
+        verify(mockedService).log("Mount table entries cache refresh successCount=4,failureCount=0");
+        states.forEach(state -> assertEquals(11L, state.getAppliedVersion()));
+    }
+
+    @Test
+    @DisplayName("Slow refresh is hedged and the hedge wins")
+    public void slowRefreshHedged() {
+        service.setHedgingEnabled(true);
+        MountTableRefresherService mockedService = Mockito.spy(service);
+
+        Others.RouterState state = new Others.RouterState("123");
+        when(routerStore.getCachedRecords()).thenReturn(List.of(state));
+        for (int i = 0; i < 20; i++) {
+            mockedService.getLatencyTracker().record(state.getAdminAddress(), 50_000_000);
+        }
+
+        // the first call only returns once the round is over
+        CountDownLatch release = new CountDownLatch(1);
+        Others.MountTableManager slowManager = mock(Others.MountTableManager.class);
+        when(slowManager.refresh()).thenAnswer(inv -> {
+            release.await();
+            return true;
+        });
+        Others.MountTableManager fastManager = mock(Others.MountTableManager.class);
+        when(fastManager.refresh()).thenReturn(true);
+        Queue<Others.MountTableManager> managers = new LinkedList<>(List.of(slowManager, fastManager));
+        List<String> plannedOn = new CopyOnWriteArrayList<>();
+        when(mockedService.getUpdateTask(anyString())).thenAnswer(inv -> {
+            plannedOn.add(Thread.currentThread().getName());
+            return new Others.UpdateTask(managers.poll(), inv.getArgument(0));
+        });
+
+        mockedService.refresh();
+        release.countDown();
+
+        verify(mockedService).log("Mount table entries cache refresh successCount=1,failureCount=0");
+        assertEquals(1, mockedService.getHedgeCount());
+        assertEquals(1, mockedService.getHedgeWinCount());
+        // the hedge is started on a refresh worker, not on the common pool
+        assertTrue(plannedOn.get(1).startsWith("MountTableRefresh_worker"), plannedOn.get(1));
+    }
+
+    @Test
+    @DisplayName("Recorded latency includes the wait for a worker, like the timeout")
+    public void latencyIncludesQueueWait() {
+        RefreshExecutor singleWorker = RefreshExecutor.fixed(1, 2);
+        service.setRefreshExecutor(singleWorker);
+        MountTableRefresherService mockedService = Mockito.spy(service);
+
+        Others.RouterState slow = new Others.RouterState("123");
+        Others.RouterState queued = new Others.RouterState("456");
+        when(routerStore.getCachedRecords()).thenReturn(List.of(slow, queued));
+        AtomicLong version = new AtomicLong();
+        when(routerStore.getMountTableVersion()).thenAnswer(inv -> version.get());
+        Others.MountTableManager slowManager = mock(Others.MountTableManager.class);
+        when(slowManager.refresh()).thenAnswer(inv -> {
+            Thread.sleep(30);
+            return true;
+        });
+        when(manager.refresh()).thenReturn(true);
+        when(mockedService.getUpdateTask(anyString())).thenAnswer(inv -> new Others.UpdateTask(
+                slow.getAdminAddress().equals(inv.getArgument(0)) ? slowManager : manager, inv.getArgument(0)));
+
+        for (int i = 0; i < RouterLatencyTracker.MIN_SAMPLES; i++) {
+            version.incrementAndGet();
+            mockedService.refresh();
+        }
+        singleWorker.shutdown(1000);
+
+        // the fast router waited for the slow one every round
+        long queuedLatency = mockedService.getLatencyTracker().percentileNanos(queued.getAdminAddress(), 50);
+        assertTrue(queuedLatency >= TimeUnit.MILLISECONDS.toNanos(25), "latency " + queuedLatency);
+    }
+
+    @Test
+    @DisplayName("Router with an open circuit breaker is skipped")
+    public void openBreakerSkipped() {
+        service.setCircuitBreakerSettings(2, 60_000, 60_000);
+        MountTableRefresherService mockedService = Mockito.spy(service);
+
+        List<Others.RouterState> states = List.of("123", "789").stream()
+                .map(Others.RouterState::new)
+                .collect(toList());
+        when(routerStore.getCachedRecords()).thenReturn(states);
+        AtomicLong version = new AtomicLong();
+
+        when(routerStore.getMountTableVersion()).thenAnswer(inv -> version.get());
+        Others.MountTableManager successManager = mock(Others.MountTableManager.class);
+        when(successManager.refresh()).thenReturn(true);
+        Others.MountTableManager failedManager = mock(Others.MountTableManager.class);
+        when(failedManager.refresh()).thenReturn(false);
+        String failing = states.get(1).getAdminAddress();
+        when(mockedService.getUpdateTask(anyString())).thenAnswer(inv -> {
+            String address = inv.getArgument(0);
+            return new Others.UpdateTask(address.equals(failing) ? failedManager : successManager, address);
+        });
+
+        for (int i = 0; i < 4; i++) {
+            version.incrementAndGet();
+            mockedService.refresh();
+        }
+
+        verify(mockedService, Mockito.times(2)).log("Mount table entries cache refresh successCount=1,failureCount=1");
+        verify(mockedService, Mockito.times(2)).log("Mount table entries cache refresh successCount=1,failureCount=0,skippedCount=1");
+        verify(failedManager, Mockito.times(2)).refresh();
+        assertEquals(CircuitBreaker.State.OPEN, mockedService.getCircuitBreaker(failing).getState());
+    }
+
+    @Test
+    @DisplayName("Pooled client is evicted when the breaker opens or the router is unreachable")
+    public void clientEvictedByBreaker() {
+        service.setCircuitBreakerSettings(2, 60_000, 60_000);
+        MountTableRefresherService mockedService = Mockito.spy(service);
+
+        List<Others.RouterState> states = List.of("123", "789").stream()
+                .map(Others.RouterState::new)
+                .collect(toList());
+        when(routerStore.getCachedRecords()).thenReturn(states);
+        AtomicLong version = new AtomicLong();
+        when(routerStore.getMountTableVersion()).thenAnswer(inv -> version.get());
+        Others.MountTableManager failedManager = mock(Others.MountTableManager.class);
+        when(failedManager.refresh()).thenReturn(false);
+        Others.MountTableManager unreachableManager = mock(Others.MountTableManager.class);
+        when(unreachableManager.refresh()).thenThrow(new UncheckedIOException(new ConnectException("refused")));
+        String failing = states.get(0).getAdminAddress();
+        String unreachable = states.get(1).getAdminAddress();
+        when(mockedService.getUpdateTask(anyString())).thenAnswer(inv -> {
+            String address = inv.getArgument(0);
+            return new Others.UpdateTask(address.equals(failing) ? failedManager : unreachableManager, address);
+        });
+
+        version.incrementAndGet();
+        mockedService.refresh();
+        verify(routerClientsCache, never()).invalidate(failing);
+        verify(routerClientsCache).invalidate(unreachable);
+
+        version.incrementAndGet();
+        mockedService.refresh();
+        verify(routerClientsCache).invalidate(failing);
     }
 
+    @Test
+    @DisplayName("Half-open probe is released when its task cannot be built")
+    public void probeReleasedOnFailedPlan() {
+        service.setCircuitBreakerSettings(1, 0, 0);
+        MountTableRefresherService mockedService = Mockito.spy(service);
+
+        List<Others.RouterState> states = List.of(new Others.RouterState("123"));
+        when(routerStore.getCachedRecords()).thenReturn(states);
+        String address = states.get(0).getAdminAddress();
+        // open with no backoff, the next call is the half-open probe
+        CircuitBreaker breaker = mockedService.getCircuitBreaker(address);
+        breaker.tryAcquire();
+        breaker.onFailure();
+
+        when(manager.refresh()).thenReturn(true);
+        when(mockedService.getUpdateTask(anyString()))
+                .thenThrow(new IllegalStateException())
+                .thenAnswer(inv -> new Others.UpdateTask(manager, inv.getArgument(0)));
+
+        assertThrows(CompletionException.class, mockedService::refresh);
+        mockedService.refresh();
+
+        verify(mockedService).log("Mount table entries cache refresh successCount=1,failureCount=0");
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    @DisplayName("Round result has the outcome of every router")
+    public void roundResultRecorded() {
+        service.setCacheUpdateTimeout(100);
+        MountTableRefresherService mockedService = Mockito.spy(service);
+
+        Others.MountTableManager successManager = mock(Others.MountTableManager.class);
+        when(successManager.refresh()).thenReturn(true);
+        Others.MountTableManager failedManager = mock(Others.MountTableManager.class);
+        when(failedManager.refresh()).thenReturn(false);
+        Others.MountTableManager timeoutManager = mock(Others.MountTableManager.class);
+        when(timeoutManager.refresh()).thenAnswer(inv -> {
+            Thread.sleep(2000);
+            return true;
+        });
+        when(mockedService.getUpdateTask(anyString())).thenAnswer(inv -> {
+            String address = inv.getArgument(0);
+            Others.MountTableManager addressManager = address.startsWith("456") ? failedManager
+                    : address.startsWith("789") ? timeoutManager : successManager;
+            return new Others.UpdateTask(addressManager, address);
+        });
+        List<Others.RouterState> states = List.of("123", "456", "789").stream()
+                .map(Others.RouterState::new)
+                .collect(toList());
+        when(routerStore.getCachedRecords()).thenReturn(states);
+
+        RefreshRoundResult result = mockedService.refreshAsync().join();
+
+        assertEquals(List.of(RefreshRoundResult.Outcome.SUCCESS, RefreshRoundResult.Outcome.FAILURE,
+                        RefreshRoundResult.Outcome.TIMEOUT),
+                result.getRouters().stream().map(RefreshRoundResult.RouterResult::getOutcome).collect(toList()));
+        assertTrue(result.getRouters().get(2).getLatencyNanos() >= 20_000_000L);
+        assertTrue(result.getWallTimeNanos() >= result.getRouters().get(2).getLatencyNanos());
+        assertSame(result, mockedService.getLastRoundResult());
+        verify(mockedService).log("Mount table entries cache refresh successCount=1,failureCount=2");
+
+        RefreshMetrics metrics = mockedService.getMetrics();
+        assertEquals(1, metrics.getRoundCount());
+        assertEquals(1, metrics.getCount(RefreshRoundResult.Outcome.SUCCESS));
+        assertEquals(1, metrics.getCount(RefreshRoundResult.Outcome.FAILURE));
+        assertEquals(1, metrics.getCount(RefreshRoundResult.Outcome.TIMEOUT));
+        assertEquals(3, metrics.getRouterLatencyNanos().getCount());
+    }
+
+    @Test
+    @DisplayName("Stream completes once the quorum has refreshed")
+    public void streamCompletesOnQuorum() throws InterruptedException {
+        MountTableRefresherService mockedService = Mockito.spy(service);
+        CountDownLatch release = new CountDownLatch(1);
+        Others.MountTableManager slowManager = mock(Others.MountTableManager.class);
+        when(slowManager.refresh()).thenAnswer(inv -> {
+            release.await();
+            return true;
+        });
+        when(manager.refresh()).thenReturn(true);
+        when(mockedService.getUpdateTask(anyString())).thenAnswer(inv -> {
+            String address = inv.getArgument(0);
+            return new Others.UpdateTask(address.startsWith("slow") ? slowManager : manager, address);
+        });
+        List<Others.RouterState> states = List.of("slow", "fast", "slow", "fast").stream()
+                .map(Others.RouterState::new)
+                .collect(toList());
+        when(routerStore.getCachedRecords()).thenReturn(states);
+
+        List<RefreshRoundResult.RouterResult> received = new CopyOnWriteArrayList<>();
+        CountDownLatch completed = new CountDownLatch(1);
+        mockedService.refreshStream(2).subscribe(collecting(received, completed));
+
+        // the slow routers are held until the stream is done
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertEquals(2, received.size());
+        received.forEach(result -> {
+            assertTrue(result.getAdminAddress().startsWith("fast"));
+            assertEquals(RefreshRoundResult.Outcome.SUCCESS, result.getOutcome());
+        });
+
+        // the tail is still refreshed in the background
+        release.countDown();
+        awaitTrue(() -> mockedService.getLastRoundResult() != null);
+        verify(slowManager, Mockito.times(2)).refresh();
+        verify(mockedService).log("Mount table entries cache refresh successCount=4,failureCount=0");
+        assertEquals(4, mockedService.getLastRoundResult().getRouters().size());
+    }
+
+    @Test
+    @DisplayName("Stream refreshes a bounded number of routers at once")
+    public void streamConcurrencyBounded() throws InterruptedException {
+        service.setRefreshConcurrency(2);
+        MountTableRefresherService mockedService = Mockito.spy(service);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(manager.refresh()).thenAnswer(inv -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            return true;
+        });
+        when(mockedService.getUpdateTask(anyString()))
+                .thenAnswer(inv -> new Others.UpdateTask(manager, inv.getArgument(0)));
+        List<Others.RouterState> states = List.of("1", "2", "3", "4", "5", "6").stream()
+                .map(Others.RouterState::new)
+                .collect(toList());
+        when(routerStore.getCachedRecords()).thenReturn(states);
+
+        List<RefreshRoundResult.RouterResult> received = new CopyOnWriteArrayList<>();
+        CountDownLatch completed = new CountDownLatch(1);
+        mockedService.refreshStream(0).subscribe(collecting(received, completed));
+
+        assertTrue(completed.await(1, TimeUnit.SECONDS));
+        assertEquals(6, received.size());
+        assertEquals(2, maxRunning.get());
+        states.forEach(state -> assertEquals(0L, state.getAppliedVersion()));
+    }
+
+    @Test
+    @DisplayName("Stream round waits for the round in progress")
+    public void streamQueuedBehindRound() throws InterruptedException {
+        MountTableRefresherService mockedService = Mockito.spy(service);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(manager.refresh()).thenAnswer(inv -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            started.countDown();
+            release.await();
+            running.decrementAndGet();
+            return true;
+        });
+        when(mockedService.getUpdateTask(anyString()))
+                .thenAnswer(inv -> new Others.UpdateTask(manager, inv.getArgument(0)));
+        List<Others.RouterState> states = List.of(new Others.RouterState("123"));
+        when(routerStore.getCachedRecords()).thenReturn(states);
+        AtomicLong version = new AtomicLong(1);
+        when(routerStore.getMountTableVersion()).thenAnswer(inv -> version.get());
+
+        CompletableFuture<RefreshRoundResult> round = mockedService.refreshAsync();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        version.incrementAndGet();
+        List<RefreshRoundResult.RouterResult> received = new CopyOnWriteArrayList<>();
+        CountDownLatch completed = new CountDownLatch(1);
+        mockedService.refreshStream(0).subscribe(collecting(received, completed));
+        release.countDown();
+
+        assertEquals(1, round.join().getTargetVersion());
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, received.size());
+        assertEquals(2, mockedService.getLastRoundResult().getTargetVersion());
+        verify(manager, Mockito.times(2)).refresh();
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    @DisplayName("Routers done at once do not deepen the stack")
+    public void manySkippedRoutersRefreshed() throws Exception {
+        RefreshExecutor stuckExecutor = mock(RefreshExecutor.class);
+        when(stuckExecutor.isStuck(anyString())).thenReturn(true);
+        service.setRefreshExecutor(stuckExecutor);
+        service.setRefreshConcurrency(1);
+        MountTableRefresherService mockedService = Mockito.spy(service);
+        when(mockedService.getUpdateTask(anyString()))
+                .thenAnswer(inv -> new Others.UpdateTask(manager, inv.getArgument(0)));
+        List<Others.RouterState> states = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            states.add(new Others.RouterState(String.valueOf(i)));
+        }
+        when(routerStore.getCachedRecords()).thenReturn(states);
+
+        // a stack overflow in a callback is swallowed and the round never ends
+        RefreshRoundResult result = mockedService.refreshAsync().get(30, TimeUnit.SECONDS);
+
+        assertEquals(20_000, result.count(RefreshRoundResult.Outcome.SKIPPED));
+        verify(manager, never()).refresh();
+    }
+
+    @Test
+    @DisplayName("Service does not start without a router connector")
+    public void connectorRequired() {
+        assertThrows(IllegalStateException.class, service::serviceInit);
+    }
+
+    @Test
+    @DisplayName("Rounds re-use the pooled clients' connections")
+    public void pooledClientsReused() throws InterruptedException {
+        LocalRouterServer server = new LocalRouterServer();
+        MountTableRefresherService pooledService = new MountTableRefresherService();
+        pooledService.setRouterConnector(server);
+        pooledService.setRouterStore(routerStore);
+        AtomicLong version = new AtomicLong();
+        when(routerStore.getMountTableVersion()).thenAnswer(inv -> version.get());
+        List<Others.RouterState> states = List.of("123", "456", "789").stream()
+                .map(Others.RouterState::new)
+                .collect(toList());
+        when(routerStore.getCachedRecords()).thenReturn(states);
+        pooledService.serviceInit();
+        pooledService.setCacheUpdateTimeout(1000);
+
+        for (int i = 0; i < 5; i++) {
+            version.incrementAndGet();
+            pooledService.refresh();
+        }
+        pooledService.serviceStop();
+
+        assertEquals(15, server.getCallCount());
+        assertEquals(3, server.getConnectCount());
+        // clients are closed on the cleaner thread
+        awaitTrue(() -> server.getOpenConnectionCount() == 0);
+    }
+
+    @Test
+    @DisplayName("Every explicit refresh reaches every router of a real store")
+    public void repeatedRefreshWithRealStore() {
+        LocalRouterServer server = new LocalRouterServer();
+        Others.RouterStore store = new Others.RouterStore();
+        store.add(new Others.RouterState("123"));
+        store.add(new Others.RouterState("456"));
+        MountTableRefresherService realStoreService = new MountTableRefresherService();
+        realStoreService.setRouterConnector(server);
+        realStoreService.setRouterStore(store);
+        realStoreService.serviceInit();
+        realStoreService.setCacheUpdateTimeout(1000);
+
+        realStoreService.refresh();
+        realStoreService.refresh();
+        realStoreService.serviceStop();
+
+        assertEquals(4, server.getCallCount());
+        assertEquals(2, store.getMountTableVersion());
+    }
+
+    @Test
+    @DisplayName("A client cache capped below the router count reconnects")
+    public void cappedClientCacheEvicts() {
+        LocalRouterServer server = new LocalRouterServer();
+        MountTableRefresherService cappedService = new MountTableRefresherService();
+        cappedService.setRouterConnector(server);
+        cappedService.setRouterStore(routerStore);
+        cappedService.setMaxCachedClients(1);
+        AtomicLong version = new AtomicLong();
+        when(routerStore.getMountTableVersion()).thenAnswer(inv -> version.get());
+        List<Others.RouterState> states = List.of("123", "456", "789").stream()
+                .map(Others.RouterState::new)
+                .collect(toList());
+        when(routerStore.getCachedRecords()).thenReturn(states);
+        cappedService.serviceInit();
+        cappedService.setCacheUpdateTimeout(1000);
+
+        for (int i = 0; i < 5; i++) {
+            version.incrementAndGet();
+            cappedService.refresh();
+        }
+        cappedService.serviceStop();
+
+        // the uncapped default connects once per router, see pooledClientsReused
+        assertTrue(server.getConnectCount() > 3, "connects " + server.getConnectCount());
+    }
+
+    // polls instead of sleeping for a guessed time
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() - deadline < 0, "condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+
+    private static Flow.Subscriber<RefreshRoundResult.RouterResult> collecting(
+            List<RefreshRoundResult.RouterResult> received, CountDownLatch completed) {
+        return new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(RefreshRoundResult.RouterResult item) {
+                received.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+                completed.countDown();
+            }
+        };
+    }
 }
@@ -0,0 +1,186 @@
+package course.concurrency.exams.refactoring;
+
+import course.concurrency.exams.VirtualThreads;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RefreshExecutorTests {
+
+    private static Runnable tracking(AtomicInteger running, AtomicInteger maxRunning, CountDownLatch release) {
+        return () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            } finally {
+                running.decrementAndGet();
+            }
+        };
+    }
+
+    @Test
+    public void testParallelismIsBounded() throws InterruptedException {
+        RefreshExecutor executor = RefreshExecutor.fixed(3, 1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(executor.submit("router" + i, tracking(running, maxRunning, release)));
+        }
+        Thread.sleep(100);
+        assertEquals(3, executor.getActiveCount());
+        assertEquals(7, executor.getQueuedCount());
+
+        release.countDown();
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
+        assertEquals(3, maxRunning.get());
+        assertEquals(10, executor.getCompletedCount());
+        assertEquals(0, executor.getQueuedCount());
+        executor.shutdown(1000);
+    }
+
+    @Test
+    public void testPerRouterLimit() throws InterruptedException {
+        RefreshExecutor executor = RefreshExecutor.fixed(8, 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            results.add(executor.submit("router", tracking(running, maxRunning, release)));
+        }
+        Thread.sleep(100);
+        assertEquals(2, executor.getActiveCount());
+        assertEquals(4, executor.getQueuedCount("router"));
+
+        release.countDown();
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
+        assertEquals(2, maxRunning.get());
+        executor.shutdown(1000);
+    }
+
+    @Test
+    public void testFailureIsWrapped() {
+        RefreshExecutor executor = RefreshExecutor.fixed(1, 1);
+        CompletableFuture<Void> result = executor.submit("router", () -> {
+            throw new RuntimeException();
+        });
+
+        Throwable failure = result.handle((ignored, ex) -> ex).join();
+        assertEquals("java.util.concurrent.CompletionException: java.lang.RuntimeException", failure.toString());
+        executor.shutdown(1000);
+    }
+
+    @Test
+    public void testShutdownRejectsQueued() throws InterruptedException {
+        RefreshExecutor executor = RefreshExecutor.fixed(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Void> running = executor.submit("router", () -> {
+            started.countDown();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {}
+        });
+        CompletableFuture<Void> waiting = executor.submit("router", () -> {});
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        executor.shutdown(1000);
+        running.join();
+        assertThrows(CompletionException.class, waiting::join);
+        assertEquals(1, executor.getRejectedCount());
+    }
+
+    @Test
+    public void testTimeoutInterruptsRunningRefresh() throws InterruptedException {
+        RefreshExecutor executor = RefreshExecutor.fixed(1, 1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        executor.submit("router", () -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        }).completeOnTimeout(null, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        assertEquals(1, executor.getCancelledCount());
+        Thread.sleep(50);
+        assertEquals(0, executor.getStuckCount());
+        assertFalse(executor.isStuck("router"));
+        executor.shutdown(1000);
+    }
+
+    @Test
+    public void testCancelledWhileQueuedNeverRuns() throws InterruptedException {
+        RefreshExecutor executor = RefreshExecutor.fixed(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        CompletableFuture<Void> first = executor.submit("router", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+        });
+        CompletableFuture<Void> second = executor.submit("router", runs::incrementAndGet);
+
+        second.cancel(false);
+        release.countDown();
+        first.join();
+        Thread.sleep(50);
+        assertEquals(0, runs.get());
+        assertEquals(1, executor.getCancelledCount());
+        executor.shutdown(1000);
+    }
+
+    @Test
+    public void testRefreshIgnoringInterruptIsStuck() throws InterruptedException {
+        RefreshExecutor executor = RefreshExecutor.fixed(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit("router", () -> {
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {}
+            }
+        }).completeOnTimeout(null, 20, TimeUnit.MILLISECONDS);
+
+        Thread.sleep(100);
+        assertTrue(executor.isStuck("router"));
+        assertEquals(1, executor.getStuckCount());
+
+        release.countDown();
+        Thread.sleep(50);
+        assertFalse(executor.isStuck("router"));
+        assertEquals(0, executor.getStuckCount());
+        executor.shutdown(1000);
+    }
+
+    @Test
+    public void testVirtualThreads() {
+        Assumptions.assumeTrue(VirtualThreads.isSupported());
+        RefreshExecutor executor = RefreshExecutor.virtualThreads(2, 1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(0);
+
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            results.add(executor.submit("router" + i, tracking(running, maxRunning, release)));
+        }
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
+        assertTrue(maxRunning.get() <= 2);
+        executor.shutdown(1000);
+    }
+}
@@ -0,0 +1,59 @@
+package course.concurrency.exams.refactoring;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RefreshMetricsTests {
+
+    @Test
+    public void testConcurrentRecording() {
+        RefreshMetrics metrics = new RefreshMetrics();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<CompletableFuture<Void>> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            writers.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    metrics.record(new RefreshRoundResult(i, i, List.of(
+                            new RefreshRoundResult.RouterResult("a", RefreshRoundResult.Outcome.SUCCESS, i))));
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(writers.toArray(CompletableFuture[]::new)).join();
+        executor.shutdown();
+        assertEquals(40_000, metrics.getRoundCount());
+        assertEquals(40_000, metrics.getRouterLatencyNanos().getCount());
+        assertEquals(40_000, metrics.getRoundWallTimeNanos().getCount());
+        assertEquals(9_999, metrics.getRouterLatencyNanos().getMax());
+    }
+
+    @Test
+    public void testRoundsAreCounted() {
+        RefreshMetrics metrics = new RefreshMetrics();
+        metrics.record(new RefreshRoundResult(1, 5_000_000, List.of(
+                new RefreshRoundResult.RouterResult("a", RefreshRoundResult.Outcome.SUCCESS, 2_000_000),
+                new RefreshRoundResult.RouterResult("b", RefreshRoundResult.Outcome.TIMEOUT, 4_000_000),
+                new RefreshRoundResult.RouterResult("c", RefreshRoundResult.Outcome.SKIPPED, 0))));
+
+        assertEquals(1, metrics.getRoundCount());
+        assertEquals(1, metrics.getCount(RefreshRoundResult.Outcome.SUCCESS));
+        assertEquals(0, metrics.getCount(RefreshRoundResult.Outcome.FAILURE));
+        assertEquals(1, metrics.getCount(RefreshRoundResult.Outcome.TIMEOUT));
+        assertEquals(1, metrics.getCount(RefreshRoundResult.Outcome.SKIPPED));
+        // skipped routers were not called, so they have no latency
+        assertEquals(2, metrics.getRouterLatencyNanos().getCount());
+
+        Map<String, Long> snapshot = metrics.snapshot();
+        assertEquals(1L, snapshot.get("refresh.rounds"));
+        assertEquals(1L, snapshot.get("refresh.routers.skipped"));
+        assertEquals(4000L, snapshot.get("refresh.router_latency_us.max"));
+        assertEquals(5000L, snapshot.get("refresh.round_wall_time_us.max"));
+    }
+}
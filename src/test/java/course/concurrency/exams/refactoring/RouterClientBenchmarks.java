@@ -0,0 +1,96 @@
+package course.concurrency.exams.refactoring;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One refresh round over ROUTERS routers, TASKS_PER_ROUTER calls each, against
+ * a LocalRouterServer where connecting costs connectCost microseconds and a
+ * call costs CALL_COST_MICROS. Results are written to
+ * target/jmh/router-client.json.
+ *
+ * Clients:
+ *   pooled   - one RouterClient per router for the whole run, connections stay warm
+ *   per-task - a new client for every call, as a fresh MountTableManager per task did
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RouterClientBenchmarks {
+
+    private static final int ROUTERS = 16;
+    private static final int TASKS_PER_ROUTER = 4;
+    private static final long CALL_COST_MICROS = 200;
+
+    @Param({"pooled", "per-task"})
+    public String client;
+
+    @Param({"100", "1000"})
+    public long connectCost;
+
+    private LocalRouterServer server;
+    private Others.RouterClient[] clients;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        server = new LocalRouterServer(connectCost, CALL_COST_MICROS);
+        clients = new Others.RouterClient[ROUTERS];
+        for (int i = 0; i < ROUTERS; i++) {
+            clients[i] = new Others.RouterClient("router" + i, server);
+        }
+        executor = Executors.newFixedThreadPool(ROUTERS * TASKS_PER_ROUTER);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (Others.RouterClient routerClient : clients) {
+            routerClient.close();
+        }
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public int round() {
+        CompletableFuture<?>[] calls = new CompletableFuture[ROUTERS * TASKS_PER_ROUTER];
+        for (int i = 0; i < calls.length; i++) {
+            int router = i % ROUTERS;
+            calls[i] = CompletableFuture.supplyAsync(() -> refresh(router), executor);
+        }
+        CompletableFuture.allOf(calls).join();
+        return calls.length;
+    }
+
+    private boolean refresh(int router) {
+        if (client.equals("pooled")) {
+            return clients[router].refresh();
+        }
+        try (Others.RouterClient fresh = new Others.RouterClient("router" + router, server)) {
+            return fresh.refresh();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new File("target/jmh").mkdirs();
+        Options options = new OptionsBuilder()
+                .include(RouterClientBenchmarks.class.getName())
+                .forks(1)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh/router-client.json")
+                .build();
+
+        new Runner(options).run();
+    }
+}
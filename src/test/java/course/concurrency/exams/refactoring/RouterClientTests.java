@@ -0,0 +1,134 @@
+package course.concurrency.exams.refactoring;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouterClientTests {
+
+    private static List<CompletableFuture<Boolean>> refreshConcurrently(Others.RouterClient client, int calls,
+                                                                         ExecutorService executor) {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < calls; i++) {
+            results.add(CompletableFuture.supplyAsync(client::refresh, executor));
+        }
+        return results;
+    }
+
+    @Test
+    public void testConnectionIsReused() {
+        LocalRouterServer server = new LocalRouterServer();
+        Others.RouterClient client = new Others.RouterClient("router", server);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(client.refresh());
+        }
+        assertEquals(1, server.getConnectCount());
+        assertEquals(10, server.getCallCount());
+        assertEquals(1, client.getConnectionCount());
+    }
+
+    @Test
+    public void testCallsAreMultiplexed() {
+        LocalRouterServer server = new LocalRouterServer(0, 50_000);
+        Others.RouterClient client = new Others.RouterClient("router", server, 2, 4);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        refreshConcurrently(client, 8, executor).forEach(result -> assertTrue(result.join()));
+        executor.shutdown();
+
+        assertTrue(server.getConnectCount() <= 2, "connects " + server.getConnectCount());
+        assertTrue(server.getMaxCallsPerConnection() > 1);
+        assertTrue(server.getMaxCallsPerConnection() <= 4);
+    }
+
+    @Test
+    public void testCallersWaitForFreeStream() {
+        LocalRouterServer server = new LocalRouterServer(0, 20_000);
+        Others.RouterClient client = new Others.RouterClient("router", server, 1, 1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        refreshConcurrently(client, 4, executor).forEach(result -> assertTrue(result.join()));
+        executor.shutdown();
+
+        assertEquals(1, server.getConnectCount());
+        assertEquals(1, server.getMaxCallsPerConnection());
+    }
+
+    @Test
+    public void testFailedConnectionIsDropped() {
+        LocalRouterServer server = new LocalRouterServer();
+        Others.RouterClient client = new Others.RouterClient("router", server);
+        assertTrue(client.refresh());
+
+        server.setDown(true);
+        assertThrows(UncheckedIOException.class, client::refresh);
+        assertEquals(0, client.getConnectionCount());
+        assertEquals(0, server.getOpenConnectionCount());
+        assertThrows(UncheckedIOException.class, client::refresh);
+
+        server.setDown(false);
+        assertTrue(client.refresh());
+        assertEquals(2, server.getConnectCount());
+    }
+
+    @Test
+    public void testCloseReleasesConnections() {
+        LocalRouterServer server = new LocalRouterServer();
+        Others.RouterClient client = new Others.RouterClient("router", server);
+        client.refresh();
+
+        client.close();
+        assertTrue(client.isClosed());
+        assertEquals(0, server.getOpenConnectionCount());
+        assertThrows(IllegalStateException.class, client::refresh);
+    }
+
+    @Test
+    public void testCloseWaitsForCallsInFlight() throws InterruptedException {
+        LocalRouterServer server = new LocalRouterServer(0, 200_000);
+        Others.RouterClient client = new Others.RouterClient("router", server);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CompletableFuture<Boolean> call = CompletableFuture.supplyAsync(client::refresh, executor);
+        while (server.getMaxCallsPerConnection() == 0) {
+            Thread.sleep(1);
+        }
+
+        client.close();
+        assertThrows(IllegalStateException.class, client::refresh);
+        assertEquals(1, server.getOpenConnectionCount());
+
+        assertTrue(call.join());
+        assertEquals(0, server.getOpenConnectionCount());
+        assertEquals(0, client.getConnectionCount());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testManagerRetriesWithReplacedClient() {
+        LocalRouterServer server = new LocalRouterServer();
+        Others.RouterClient evicted = new Others.RouterClient("router", server);
+        Others.RouterClient replacement = new Others.RouterClient("router", server);
+        evicted.close();
+        AtomicInteger lookups = new AtomicInteger();
+        Others.MountTableManager manager = new Others.MountTableManager("router",
+                () -> lookups.getAndIncrement() == 0 ? evicted : replacement);
+
+        assertTrue(manager.refresh());
+        assertEquals(1, server.getCallCount());
+    }
+
+    @Test
+    public void testManagerWithoutClientFails() {
+        Others.MountTableManager manager = new Others.MountTableManager("router", () -> null);
+        assertThrows(IllegalStateException.class, manager::refresh);
+    }
+}
@@ -0,0 +1,65 @@
+package course.concurrency.exams.refactoring;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouterLatencyTrackerTests {
+
+    private static final long DEFAULT = 1_000_000_000;
+    private static final long MIN = 1_000_000;
+
+    @Test
+    public void testDefaultUntilEnoughSamples() {
+        RouterLatencyTracker tracker = new RouterLatencyTracker();
+        assertEquals(DEFAULT, tracker.timeoutNanos("router", DEFAULT, MIN));
+
+        for (int i = 0; i < RouterLatencyTracker.MIN_SAMPLES - 1; i++) {
+            tracker.record("router", 5_000_000);
+        }
+        assertEquals(DEFAULT, tracker.timeoutNanos("router", DEFAULT, MIN));
+        assertEquals(-1, tracker.percentileNanos("router", 95));
+
+        tracker.record("router", 5_000_000);
+        assertTrue(tracker.timeoutNanos("router", DEFAULT, MIN) < DEFAULT);
+    }
+
+    @Test
+    public void testTimeoutFollowsLatency() {
+        RouterLatencyTracker tracker = new RouterLatencyTracker();
+        for (int i = 0; i < 100; i++) {
+            tracker.record("fast", 2_000_000);
+            tracker.record("slow", 200_000_000);
+        }
+        long fast = tracker.timeoutNanos("fast", DEFAULT, MIN);
+        long slow = tracker.timeoutNanos("slow", DEFAULT, MIN);
+
+        assertTrue(fast >= 2 * 2_000_000 && fast < 10_000_000, "fast " + fast);
+        assertTrue(slow >= 2 * 200_000_000 && slow <= DEFAULT, "slow " + slow);
+    }
+
+    @Test
+    public void testTimeoutIsBounded() {
+        RouterLatencyTracker tracker = new RouterLatencyTracker();
+        for (int i = 0; i < 100; i++) {
+            tracker.record("tiny", 1_000);
+            tracker.record("huge", 10 * DEFAULT);
+        }
+        assertEquals(MIN, tracker.timeoutNanos("tiny", DEFAULT, MIN));
+        assertEquals(DEFAULT, tracker.timeoutNanos("huge", DEFAULT, MIN));
+    }
+
+    @Test
+    public void testPercentileOverRecentWindow() {
+        RouterLatencyTracker tracker = new RouterLatencyTracker();
+        for (int i = 1; i <= 100; i++) {
+            tracker.record("router", 1_000_000_000L);
+        }
+        // the window forgets the old slow samples
+        for (int i = 1; i <= 100; i++) {
+            tracker.record("router", i);
+        }
+        // the last 64 samples are 37..100
+        assertEquals(97, tracker.percentileNanos("router", 95));
+    }
+}
@@ -0,0 +1,107 @@
+package course.concurrency.exams.refactoring;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouterStoreTests {
+
+    @Test
+    public void testAddAndRemove() {
+        Others.RouterStore store = new Others.RouterStore(4);
+        Others.RouterState first = new Others.RouterState("router");
+        Others.RouterState second = new Others.RouterState("router");
+
+        assertTrue(store.add(first));
+        assertTrue(store.add(second));
+        assertFalse(store.add(first));
+        assertEquals(2, store.size());
+        assertSame(first, store.get(first.getAdminAddress()));
+
+        assertSame(first, store.remove(first.getAdminAddress()));
+        assertNull(store.remove(first.getAdminAddress()));
+        assertNull(store.get(first.getAdminAddress()));
+        assertEquals(List.of(second), store.getCachedRecords());
+    }
+
+    @Test
+    public void testSnapshotIsImmutable() {
+        Others.RouterStore store = new Others.RouterStore(8);
+        List<Others.RouterState> added = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Others.RouterState state = new Others.RouterState("router");
+            added.add(state);
+            store.add(state);
+        }
+        List<Others.RouterState> snapshot = store.getCachedRecords();
+
+        store.remove(added.get(0).getAdminAddress());
+        store.add(new Others.RouterState("router"));
+
+        assertEquals(100, snapshot.size());
+        assertEquals(new HashSet<>(added), new HashSet<>(snapshot));
+        for (int i = 0; i < snapshot.size(); i++) {
+            assertSame(snapshot.get(i), new ArrayList<>(snapshot).get(i));
+        }
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(added.get(0)));
+        assertThrows(IndexOutOfBoundsException.class, () -> snapshot.get(100));
+    }
+
+    @Test
+    public void testShardsPartitionRouters() {
+        Others.RouterStore store = new Others.RouterStore(10);
+        assertEquals(16, store.getShardCount());
+        assertEquals(1, new Others.RouterStore(1).getShardCount());
+        assertEquals(2, new Others.RouterStore(2).getShardCount());
+        for (int i = 0; i < 200; i++) {
+            store.add(new Others.RouterState("router"));
+        }
+        int total = 0;
+        for (int shard = 0; shard < store.getShardCount(); shard++) {
+            for (Others.RouterState state : store.getCachedRecords(shard)) {
+                assertEquals(shard, store.shardOf(state.getAdminAddress()));
+                total++;
+            }
+        }
+        assertEquals(200, total);
+    }
+
+    @Test
+    public void testConcurrentChanges() {
+        Others.RouterStore store = new Others.RouterStore(4);
+        int threads = 8;
+        int perThread = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<CompletableFuture<Void>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            writers.add(CompletableFuture.runAsync(() -> {
+                List<Others.RouterState> mine = new ArrayList<>();
+                for (int i = 0; i < perThread; i++) {
+                    Others.RouterState state = new Others.RouterState("router");
+                    mine.add(state);
+                    assertTrue(store.add(state));
+                    // readers always see a consistent snapshot
+                    Set<String> seen = new HashSet<>();
+                    store.getCachedRecords(store.shardOf(state.getAdminAddress()))
+                            .forEach(s -> assertTrue(seen.add(s.getAdminAddress())));
+                }
+                for (int i = 0; i < perThread; i += 2) {
+                    assertSame(mine.get(i), store.remove(mine.get(i).getAdminAddress()));
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(writers.toArray(CompletableFuture[]::new)).join();
+        executor.shutdown();
+
+        assertEquals(threads * perThread / 2, store.size());
+        assertEquals(threads * perThread / 2, store.getCachedRecords().size());
+    }
+}
@@ -0,0 +1,101 @@
+package course.concurrency.m2_async.cf.report;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReportServiceBulkheadTests {
+
+    private static final Supplier<Collection<Others.Item>> ITEMS =
+            () -> List.of(new Others.Item(), new Others.Item());
+
+    private static Supplier<Collection<Others.Customer>> blockingCustomers(CountDownLatch release,
+                                                                           CountDownLatch interrupted) {
+        return () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return List.of(new Others.Customer());
+        };
+    }
+
+    @Test
+    public void testSlowSourceGivesPartialReport() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        ReportServiceCF service = new ReportServiceCF(new Bulkhead("items", 1, 1),
+                new Bulkhead("customers", 1, 1), 200, ITEMS,
+                blockingCustomers(new CountDownLatch(1), interrupted));
+
+        long start = System.nanoTime();
+        Others.Report report = service.getReport();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(report.isPartial());
+        assertEquals(Set.of("customers"), report.getMissingSources());
+        assertEquals(2, report.getItems().size());
+        assertTrue(report.getCustomers().isEmpty());
+        assertTrue(elapsedMillis < 1000, "took " + elapsedMillis);
+        // the abandoned call does not keep the only thread of its bulkhead
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        service.shutdown();
+    }
+
+    @Test
+    public void testFullBulkheadRejectsWithoutBlocking() {
+        CountDownLatch release = new CountDownLatch(1);
+        ReportServiceCF service = new ReportServiceCF(new Bulkhead("items", 2, 2),
+                new Bulkhead("customers", 1, 1), 10_000, ITEMS,
+                blockingCustomers(release, new CountDownLatch(1)));
+
+        // one running and one queued call fill the customers bulkhead
+        CompletableFuture<Others.Report> first = CompletableFuture.supplyAsync(service::getReport);
+        CompletableFuture<Others.Report> second = CompletableFuture.supplyAsync(service::getReport);
+        while (service.getCustomersBulkhead().getQueuedCount() == 0) {
+            Thread.onSpinWait();
+        }
+
+        Others.Report rejected = service.getReport();
+        assertEquals(Set.of("customers"), rejected.getMissingSources());
+        assertEquals(2, rejected.getItems().size());
+        assertEquals(1, service.getCustomersBulkhead().getRejectedCount());
+        assertEquals(0, service.getItemsBulkhead().getRejectedCount());
+
+        release.countDown();
+        assertFalse(first.join().isPartial());
+        assertFalse(second.join().isPartial());
+        service.shutdown();
+    }
+
+    @Test
+    public void testCancelledCallLeavesQueue() {
+        Bulkhead bulkhead = new Bulkhead("source", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> running = bulkhead.supply(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+            return 1;
+        });
+        CompletableFuture<Integer> queued = bulkhead.supply(() -> 2);
+        assertEquals(1, bulkhead.getQueuedCount());
+
+        queued.cancel(false);
+        assertEquals(0, bulkhead.getQueuedCount());
+        // the freed slot takes the next call
+        CompletableFuture<Integer> next = bulkhead.supply(() -> 3);
+        release.countDown();
+        assertEquals(1, running.join());
+        assertEquals(3, next.join());
+        bulkhead.shutdown();
+    }
+}